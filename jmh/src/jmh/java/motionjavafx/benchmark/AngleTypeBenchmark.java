@@ -0,0 +1,35 @@
+package motionjavafx.benchmark;
+
+import motionjavafx.model.Angle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Angle.AngleType.fromInt over all stored type numbers, it runs for every angle of a legacy row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AngleTypeBenchmark {
+    private final int[] numbers = new int[Angle.AngleType.values().length];
+
+    public AngleTypeBenchmark() {
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = Angle.AngleType.values()[i].getNumber();
+        }
+    }
+
+    @Benchmark
+    public void fromInt(Blackhole blackhole) {
+        for (int number : numbers) {
+            blackhole.consume(Angle.AngleType.fromInt(number));
+        }
+    }
+}
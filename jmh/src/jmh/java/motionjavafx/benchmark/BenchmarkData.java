@@ -0,0 +1,102 @@
+package motionjavafx.benchmark;
+
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+import motionjavafx.model.HandSkeleton;
+import motionjavafx.tracking.FrameReplaySource;
+import motionjavafx.tracking.TrackingFrame;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic hands and libraries for the benchmarks, so they run headless without a Leap device.
+ * With -Dmotionjavafx.benchmark.recording=file the hands of a frame log are used instead of synthetic ones.
+ */
+final class BenchmarkData {
+    static final long SEED = 42;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * A roughly hand shaped skeleton: five fingers fanned out from the wrist, each bent by a random curl.
+     */
+    static HandSkeleton syntheticHand(Random random, boolean rightHand) {
+        final HandSkeleton skeleton = new HandSkeleton();
+        skeleton.setRightHand(rightHand);
+        final float side = rightHand ? 1 : -1;
+        skeleton.setPoint(HandSkeleton.WRIST, 0, 150, 0);
+        skeleton.setPoint(HandSkeleton.PALM, 0, 150, -50);
+        skeleton.setPoint(HandSkeleton.PALM_NORMAL, 0, -1, 0);
+        skeleton.setPoint(HandSkeleton.DIRECTION, 0, 0, -1);
+        for (int finger = 0; finger < HandSkeleton.FINGER_COUNT; finger++) {
+            final double spread = side * (finger - 2) * 0.25 + random.nextGaussian() * 0.05;
+            final double curl = random.nextDouble() * 1.2;
+            float x = (float) (Math.sin(spread) * 20);
+            float y = 150;
+            float z = (float) (-Math.cos(spread) * 20);
+            double pitch = 0;
+            for (int joint = HandSkeleton.METACARPAL; joint <= HandSkeleton.TIP; joint++) {
+                skeleton.setPoint(HandSkeleton.jointIndex(finger, joint), x, y, z);
+                // like the device, the thumb has a metacarpal of zero length
+                final float length = joint != HandSkeleton.METACARPAL ? 25 : finger == 0 ? 0 : 45;
+                pitch += curl / 3;
+                x += (float) (Math.sin(spread) * Math.cos(pitch) * length);
+                y -= (float) (Math.sin(pitch) * length);
+                z -= (float) (Math.cos(spread) * Math.cos(pitch) * length);
+            }
+        }
+        return skeleton;
+    }
+
+    /**
+     * Hands of the recording named by -Dmotionjavafx.benchmark.recording, or count synthetic hands.
+     */
+    static List<HandSkeleton> hands(Random random, int count) throws IOException {
+        final String recording = System.getProperty("motionjavafx.benchmark.recording");
+        final List<HandSkeleton> hands = new ArrayList<>();
+        if (recording != null) {
+            for (TrackingFrame frame : FrameReplaySource.readAll(Paths.get(recording))) {
+                for (int i = 0; i < frame.getHandCount(); i++) {
+                    final HandSkeleton copy = new HandSkeleton();
+                    copy.copyFrom(frame.getHand(i));
+                    hands.add(copy);
+                }
+            }
+            if (!hands.isEmpty()) {
+                return hands;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            hands.add(syntheticHand(random, random.nextBoolean()));
+        }
+        return hands;
+    }
+
+    /**
+     * size gestures of one or two hands each.
+     */
+    static List<Gesture> library(Random random, int size) {
+        final List<Gesture> library = new ArrayList<>(size);
+        for (int g = 0; g < size; g++) {
+            final List<HandGesture> hands = new ArrayList<>();
+            final boolean right = random.nextBoolean();
+            hands.add(new HandGesture(syntheticHand(random, right)));
+            if (g % 4 == 0) {
+                hands.add(new HandGesture(syntheticHand(random, !right)));
+            }
+            library.add(new Gesture(g, "gesture" + g, hands));
+        }
+        return library;
+    }
+
+    static Gesture liveGesture(Random random) {
+        final Gesture gesture = new Gesture();
+        gesture.getHandGestures().add(new HandGesture(syntheticHand(random, random.nextBoolean())));
+        return gesture;
+    }
+}
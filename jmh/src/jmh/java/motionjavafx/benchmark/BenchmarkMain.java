@@ -0,0 +1,25 @@
+package motionjavafx.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON for regression tracking.
+ * Usage: BenchmarkMain [include regex] [result file, default jmh-result.json]
+ * From the build, gradle :jmh:jmh does the same and writes jmh/build/results/jmh/results.json.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        final String include = args.length > 0 ? args[0] : "motionjavafx\\.benchmark\\..*";
+        final String result = args.length > 1 ? args[1] : "jmh-result.json";
+        final Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+package motionjavafx.benchmark;
+
+import motionjavafx.model.FeatureExtractor;
+import motionjavafx.model.FeatureVector;
+import motionjavafx.model.HandGesture;
+import motionjavafx.model.HandSkeleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feature extraction from a tracked hand, once into a reused vector and once through a new HandGesture.
+ * extractFromDeviceOrigin is the extractor used before the palm frame one, kept here as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeatureExtractionBenchmark {
+    private HandSkeleton[] hands;
+    private final FeatureVector features = new FeatureVector();
+    private final FeatureExtractor extractor = new FeatureExtractor();
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        final List<HandSkeleton> list = BenchmarkData.hands(new Random(BenchmarkData.SEED), 1024);
+        hands = list.toArray(new HandSkeleton[list.size()]);
+    }
+
+    private HandSkeleton nextHand() {
+        final HandSkeleton hand = hands[next];
+        next = next + 1 == hands.length ? 0 : next + 1;
+        return hand;
+    }
+
+    @Benchmark
+    public FeatureVector extractIntoVector() {
+        features.extract(nextHand());
+        return features;
+    }
+
+    @Benchmark
+    public HandGesture newHandGesture() {
+        return new HandGesture(nextHand());
+    }
+
+    @Benchmark
+    public FeatureVector extractPalmFrame() {
+        extractor.extract(nextHand(), features);
+        return features;
+    }
+
+    @Benchmark
+    public FeatureVector extractFromDeviceOrigin() {
+        final HandSkeleton skeleton = nextHand();
+        int slot = FeatureVector.FTOB_OFFSET;
+        for (int i = 0; i < HandSkeleton.FINGER_COUNT; i++) {
+            features.set(slot++, skeleton.angleBetween(HandSkeleton.tipIndex(i),
+                    HandSkeleton.jointIndex(i, HandSkeleton.PROXIMAL)));
+        }
+        for (int i = 0; i < HandSkeleton.FINGER_COUNT; i++) {
+            for (int j = i + 1; j < HandSkeleton.FINGER_COUNT; j++) {
+                features.set(slot++, skeleton.angleBetween(HandSkeleton.tipIndex(i), HandSkeleton.tipIndex(j)));
+            }
+        }
+        features.set(slot, skeleton.angleBetween(HandSkeleton.jointIndex(2, HandSkeleton.PROXIMAL), HandSkeleton.WRIST));
+        return features;
+    }
+}
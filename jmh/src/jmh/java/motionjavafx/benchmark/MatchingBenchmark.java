@@ -0,0 +1,88 @@
+package motionjavafx.benchmark;
+
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+import motionjavafx.recognition.GestureIndex;
+import motionjavafx.recognition.GestureMatch;
+import motionjavafx.recognition.LinearGestureMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Best match of one live gesture against libraries from 10 to 100k gestures,
+ * with the original linear scan and with the packed index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MatchingBenchmark {
+    private static final int QUERIES = 64;
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int librarySize;
+
+    private List<Gesture> library;
+    private GestureIndex.Searcher searcher;
+    private float[] scales;
+    private Gesture[] queries;
+    private HandGesture storedHand;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(BenchmarkData.SEED);
+        library = BenchmarkData.library(random, librarySize);
+        final GestureIndex index = GestureIndex.build(library);
+        searcher = index.newSearcher();
+        scales = index.getScales();
+        queries = new Gesture[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = BenchmarkData.liveGesture(random);
+        }
+        storedHand = library.get(0).getHandGestures().get(0);
+    }
+
+    private Gesture nextQuery() {
+        final Gesture query = queries[next];
+        next = (next + 1) % QUERIES;
+        return query;
+    }
+
+    @Benchmark
+    public GestureMatch linearFindBestMatch() {
+        return LinearGestureMatcher.findBestMatch(library, nextQuery(), scales);
+    }
+
+    @Benchmark
+    public GestureMatch indexBest() {
+        return searcher.best(nextQuery());
+    }
+
+    /**
+     * The same ranking without the bounded early exit of best, the baseline for the pruning.
+     */
+    @Benchmark
+    public GestureMatch indexFullScan() {
+        return searcher.nearest(nextQuery(), 1).get(0);
+    }
+
+    @Benchmark
+    public double calcConfidentiality() {
+        return LinearGestureMatcher.calcConfidentiality(nextQuery(), library.get(librarySize / 2));
+    }
+
+    @Benchmark
+    public double calcFailure() {
+        return LinearGestureMatcher.calcFailure(nextQuery().getHandGestures().get(0), storedHand);
+    }
+}
@@ -0,0 +1,74 @@
+package motionjavafx.benchmark;
+
+import motionjavafx.model.Gesture;
+import motionjavafx.model.GestureDAO;
+import motionjavafx.model.HandGesture;
+import motionjavafx.util.DBUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and storing gestures through GestureDAO against a fresh SQLite file in the temp directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersistenceBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int librarySize;
+
+    private Path databaseFile;
+    private Gesture[] inserts;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws Exception {
+        databaseFile = Files.createTempFile("motionjavafx-benchmark", ".db");
+        DBUtil.connStr = "jdbc:sqlite:" + databaseFile.toAbsolutePath();
+        final Random random = new Random(BenchmarkData.SEED);
+        GestureDAO.insertGestures(BenchmarkData.library(random, librarySize));
+        inserts = BenchmarkData.library(random, 256).toArray(new Gesture[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        DBUtil.shutdown();
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            Files.deleteIfExists(Paths.get(databaseFile + suffix));
+        }
+    }
+
+    @Benchmark
+    public List<Gesture> getAllGestures() throws Exception {
+        return GestureDAO.getAllGestures();
+    }
+
+    /**
+     * Every call stores a copy, so the library grows slowly over the run.
+     */
+    @Benchmark
+    public Gesture insertGesture() throws Exception {
+        final Gesture template = inserts[next];
+        next = (next + 1) % inserts.length;
+        final List<HandGesture> hands = new ArrayList<>(template.getHandGestures());
+        final Gesture gesture = new Gesture(0, template.getName(), hands);
+        GestureDAO.insertGesture(gesture);
+        return gesture;
+    }
+}
@@ -1,11 +1,13 @@
 package motionjavafx;
 
+import com.leapmotion.leap.Bone;
 import com.leapmotion.leap.Finger;
-import javafx.scene.Group;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Material;
 import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.Sphere;
 import motionjavafx.FingerModel;
+import motionjavafx.model.HandSkeleton;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -13,9 +15,11 @@ import java.util.Map;
 /**
  * Created by Howl on 10/8/2016.
  */
-public class HandModel extends Group {
+public class HandModel extends HandView {
     private Map<Finger.Type, FingerModel> fingers = new HashMap<>();
     private Map<Finger.Type,Material> fingerMaterials = new HashMap<>();
+    // spheres by HandSkeleton joint index
+    private final Sphere[] joints = new Sphere[HandSkeleton.FINGER_COUNT * HandSkeleton.JOINTS_PER_FINGER];
 
     public HandModel() {
         for (Finger.Type type : Finger.Type.values()) {
@@ -28,10 +32,26 @@ public class HandModel extends Group {
             final Finger.Type fingerType = fingerModelEntry.getKey();
             final FingerModel fingerModel = fingerModelEntry.getValue();
             fingerModel.setFingerTipMaterial(fingerMaterials.get(fingerType));
+            final int finger = fingerType.ordinal();
+            for (Bone.Type boneType : Bone.Type.values()) {
+                joints[HandSkeleton.boneIndex(finger, boneType)] = fingerModel.getBoneByType(boneType);
+            }
+            joints[HandSkeleton.tipIndex(finger)] = fingerModel.getFingerTip();
         }
 
     }
 
+    @Override
+    public void update(float[] points, int offset) {
+        for (int i = 0; i < joints.length; i++) {
+            final Sphere sphere = joints[i];
+            final int point = offset + i * 3;
+            sphere.setTranslateX(points[point] / SCALE);
+            sphere.setTranslateY(points[point + 1] / SCALE);
+            sphere.setTranslateZ(points[point + 2] / SCALE);
+        }
+    }
+
     public FingerModel getFingerByType(Finger.Type type) {
         return fingers.get(type);
     }
@@ -0,0 +1,27 @@
+package motionjavafx;
+
+import javafx.scene.Group;
+
+/**
+ * A node that draws one hand from the points of a {@link motionjavafx.model.HandSkeleton}.
+ */
+public abstract class HandView extends Group {
+    // Leap millimetres per scene unit
+    public static final float SCALE = 5;
+
+    /**
+     * Moves the hand to the HandSkeleton point array starting at offset. FX thread only.
+     */
+    public abstract void update(float[] points, int offset);
+
+    /**
+     * The hand model for -Dmotionjavafx.render.mode, "spheres" (default) or "mesh".
+     */
+    public static HandView create() {
+        final String mode = System.getProperty("motionjavafx.render.mode", "spheres");
+        if ("mesh".equalsIgnoreCase(mode)) {
+            return new MeshHandModel();
+        }
+        return new HandModel();
+    }
+}
@@ -0,0 +1,200 @@
+package motionjavafx;
+
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Material;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import motionjavafx.model.HandSkeleton;
+
+/**
+ * Draws a whole hand as one {@link MeshView}: an octahedron per joint and a thin prism per bone.
+ * The topology is built once, every update only rewrites the points of the mesh in place,
+ * so many hands (e.g. recorded templates next to the live hand) stay cheap to draw.
+ *
+ * Every finger, and palm plus wrist, is a part with its own texture coordinate. With the material of
+ * {@link #createErrorMaterial()} each finger can be shaded from green to red by {@link #setFingerErrors}.
+ */
+public class MeshHandModel extends HandView {
+    private static final float JOINT_RADIUS = 3f;
+    private static final float BONE_RADIUS = 1.2f;
+    // all finger joints, then palm and wrist
+    private static final int JOINT_COUNT = HandSkeleton.WRIST + 1;
+    // 4 bones per finger plus wrist to metacarpal
+    private static final int BONE_COUNT = HandSkeleton.FINGER_COUNT * HandSkeleton.JOINTS_PER_FINGER;
+    private static final int VERTICES_PER_JOINT = 6;
+    private static final int VERTICES_PER_BONE = 6;
+    private static final int[] OCTAHEDRON_FACES = {
+            0, 2, 4, 2, 1, 4, 1, 3, 4, 3, 0, 4,
+            2, 0, 5, 1, 2, 5, 3, 1, 5, 0, 3, 5};
+    private static final int[] PRISM_FACES = {
+            0, 1, 3, 1, 4, 3,
+            1, 2, 4, 2, 5, 4,
+            2, 0, 5, 0, 3, 5};
+    private static final float[] PRISM_COS = {1f, -0.5f, -0.5f};
+    private static final float[] PRISM_SIN = {0f, 0.8660254f, -0.8660254f};
+    // five fingers, then palm and wrist
+    private static final int PART_COUNT = HandSkeleton.FINGER_COUNT + 1;
+    private static final int PALETTE_SIZE = 16;
+    private static final double PALETTE_OPACITY = 0.6;
+
+    private final TriangleMesh mesh = new TriangleMesh();
+    private final MeshView meshView = new MeshView(mesh);
+    private final int[] boneFrom = new int[BONE_COUNT];
+    private final int[] boneTo = new int[BONE_COUNT];
+    private final float[] vertices = new float[(JOINT_COUNT * VERTICES_PER_JOINT + BONE_COUNT * VERTICES_PER_BONE) * 3];
+    private final float[] texCoords = new float[PART_COUNT * 2];
+
+    public MeshHandModel() {
+        this(defaultMaterial());
+    }
+
+    public MeshHandModel(Material material) {
+        int bone = 0;
+        for (int finger = 0; finger < HandSkeleton.FINGER_COUNT; finger++) {
+            boneFrom[bone] = HandSkeleton.WRIST;
+            boneTo[bone++] = HandSkeleton.jointIndex(finger, HandSkeleton.METACARPAL);
+            for (int joint = HandSkeleton.METACARPAL; joint < HandSkeleton.TIP; joint++) {
+                boneFrom[bone] = HandSkeleton.jointIndex(finger, joint);
+                boneTo[bone++] = HandSkeleton.jointIndex(finger, joint + 1);
+            }
+        }
+        mesh.getTexCoords().addAll(texCoords);
+        final int[] faces = new int[(JOINT_COUNT * OCTAHEDRON_FACES.length + BONE_COUNT * PRISM_FACES.length) * 2];
+        int f = 0;
+        for (int joint = 0; joint < JOINT_COUNT; joint++) {
+            for (int vertex : OCTAHEDRON_FACES) {
+                faces[f++] = joint * VERTICES_PER_JOINT + vertex;
+                faces[f++] = Math.min(joint / HandSkeleton.JOINTS_PER_FINGER, HandSkeleton.FINGER_COUNT);
+            }
+        }
+        final int boneBase = JOINT_COUNT * VERTICES_PER_JOINT;
+        for (int b = 0; b < BONE_COUNT; b++) {
+            for (int vertex : PRISM_FACES) {
+                faces[f++] = boneBase + b * VERTICES_PER_BONE + vertex;
+                faces[f++] = boneTo[b] / HandSkeleton.JOINTS_PER_FINGER;
+            }
+        }
+        mesh.getPoints().resize(vertices.length);
+        mesh.getFaces().setAll(faces);
+        meshView.setMaterial(material);
+        meshView.setCullFace(CullFace.NONE);
+        getChildren().add(meshView);
+    }
+
+    private static Material defaultMaterial() {
+        final PhongMaterial material = new PhongMaterial();
+        material.setDiffuseColor(Color.LIGHTGRAY);
+        material.setSpecularColor(Color.WHITE);
+        return material;
+    }
+
+    /**
+     * Translucent palette from green (index 0) to red (last index) for {@link #setFingerErrors}.
+     */
+    public static Material createErrorMaterial() {
+        final WritableImage palette = new WritableImage(PALETTE_SIZE, 1);
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            palette.getPixelWriter().setColor(i, 0,
+                    Color.hsb(120.0 * (PALETTE_SIZE - 1 - i) / (PALETTE_SIZE - 1), 0.9, 0.9, PALETTE_OPACITY));
+        }
+        final PhongMaterial material = new PhongMaterial();
+        material.setDiffuseMap(palette);
+        return material;
+    }
+
+    public void setMaterial(Material material) {
+        meshView.setMaterial(material);
+    }
+
+    /**
+     * Shades every finger by its error, maxError and above is full red. Palm and wrist stay green. FX thread only.
+     */
+    public void setFingerErrors(float[] perFinger, float maxError) {
+        for (int part = 0; part < PART_COUNT; part++) {
+            final float error = part < HandSkeleton.FINGER_COUNT ? perFinger[part] : 0f;
+            final float shade = Math.min(1f, error / maxError);
+            texCoords[part * 2] = (0.5f + Math.round(shade * (PALETTE_SIZE - 1))) / PALETTE_SIZE;
+            texCoords[part * 2 + 1] = 0.5f;
+        }
+        mesh.getTexCoords().set(0, texCoords, 0, texCoords.length);
+    }
+
+    @Override
+    public void update(float[] points, int offset) {
+        int v = 0;
+        for (int joint = 0; joint < JOINT_COUNT; joint++) {
+            final int p = offset + joint * 3;
+            final float x = points[p] / SCALE;
+            final float y = points[p + 1] / SCALE;
+            final float z = points[p + 2] / SCALE;
+            v = put(v, x + JOINT_RADIUS, y, z);
+            v = put(v, x - JOINT_RADIUS, y, z);
+            v = put(v, x, y + JOINT_RADIUS, z);
+            v = put(v, x, y - JOINT_RADIUS, z);
+            v = put(v, x, y, z + JOINT_RADIUS);
+            v = put(v, x, y, z - JOINT_RADIUS);
+        }
+        for (int b = 0; b < BONE_COUNT; b++) {
+            v = putBone(v, points, offset + boneFrom[b] * 3, offset + boneTo[b] * 3);
+        }
+        mesh.getPoints().set(0, vertices, 0, vertices.length);
+    }
+
+    private int put(int v, float x, float y, float z) {
+        vertices[v] = x;
+        vertices[v + 1] = y;
+        vertices[v + 2] = z;
+        return v + 3;
+    }
+
+    /**
+     * Writes a triangular prism around the segment between two points.
+     */
+    private int putBone(int v, float[] points, int from, int to) {
+        final float ax = points[from] / SCALE;
+        final float ay = points[from + 1] / SCALE;
+        final float az = points[from + 2] / SCALE;
+        final float bx = points[to] / SCALE;
+        final float by = points[to + 1] / SCALE;
+        final float bz = points[to + 2] / SCALE;
+        float dx = bx - ax;
+        float dy = by - ay;
+        float dz = bz - az;
+        final float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length < 1e-6f) {
+            dx = 0;
+            dy = 0;
+            dz = 1;
+        } else {
+            dx /= length;
+            dy /= length;
+            dz /= length;
+        }
+        // u = normalize(d x helper), w = d x u
+        final boolean alongX = Math.abs(dx) > 0.9f;
+        float ux = alongX ? -dz : 0;
+        float uy = alongX ? 0 : dz;
+        float uz = alongX ? dx : -dy;
+        final float uLength = (float) Math.sqrt(ux * ux + uy * uy + uz * uz);
+        ux /= uLength;
+        uy /= uLength;
+        uz /= uLength;
+        final float wx = dy * uz - dz * uy;
+        final float wy = dz * ux - dx * uz;
+        final float wz = dx * uy - dy * ux;
+        for (int end = 0; end < 2; end++) {
+            final float cx = end == 0 ? ax : bx;
+            final float cy = end == 0 ? ay : by;
+            final float cz = end == 0 ? az : bz;
+            for (int k = 0; k < 3; k++) {
+                final float c = PRISM_COS[k] * BONE_RADIUS;
+                final float s = PRISM_SIN[k] * BONE_RADIUS;
+                v = put(v, cx + c * ux + s * wx, cy + c * uy + s * wy, cz + c * uz + s * wz);
+            }
+        }
+        return v;
+    }
+}
@@ -0,0 +1,65 @@
+package motionjavafx;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.control.Label;
+import motionjavafx.metrics.LatencyHistogram;
+import motionjavafx.metrics.Metrics;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Text overlay on the 3D view with frame rate, latency percentiles and queue gauges from {@link Metrics},
+ * refreshed twice a second. Shown with -Dmotionjavafx.metrics.overlay=true, needs metrics to be on.
+ */
+class MetricsOverlay extends Label {
+    private static final long REFRESH_NANOS = 500_000_000L;
+
+    private final StringBuilder text = new StringBuilder();
+    private long lastRefresh = 0;
+    private long lastFrames = 0;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (now - lastRefresh >= REFRESH_NANOS) {
+                refresh(now);
+            }
+        }
+    };
+
+    MetricsOverlay() {
+        setMouseTransparent(true);
+        setStyle("-fx-background-color: rgba(0, 0, 0, 0.5); -fx-text-fill: white; -fx-font-family: monospace; -fx-padding: 4;");
+    }
+
+    static boolean isEnabled() {
+        return Metrics.ENABLED && Boolean.getBoolean("motionjavafx.metrics.overlay");
+    }
+
+    public void start() {
+        timer.start();
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    private void refresh(long now) {
+        final long frames = Metrics.FRAMES.sum();
+        final double seconds = lastRefresh == 0 ? 0 : (now - lastRefresh) / 1e9;
+        text.setLength(0);
+        text.append(String.format(Locale.ROOT, "frames/s %6.1f%n", seconds == 0 ? 0 : (frames - lastFrames) / seconds));
+        for (LatencyHistogram histogram : Metrics.histograms()) {
+            final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            text.append(String.format(Locale.ROOT, "%-11s p50 %7.3f  p99 %7.3f  max %7.3f ms%n", histogram.getName(),
+                    snapshot.getP50Millis(), snapshot.getP99Millis(), snapshot.getMaxMillis()));
+        }
+        for (Map.Entry<String, Long> gauge : Metrics.readGauges().entrySet()) {
+            text.append(gauge.getKey()).append(' ').append(gauge.getValue()).append('\n');
+        }
+        setText(text.toString());
+        lastRefresh = now;
+        lastFrames = frames;
+    }
+}
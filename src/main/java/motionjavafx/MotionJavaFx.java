@@ -1,35 +1,60 @@
 package motionjavafx;
 
-import com.leapmotion.leap.*;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.Event;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
 import javafx.scene.Group;
 import javafx.scene.PerspectiveCamera;
 import javafx.scene.Scene;
 import javafx.scene.SubScene;
+import javafx.scene.control.Button;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.Pane;
+import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Box;
 import javafx.stage.Stage;
-import motionjavafx.model.Angle;
+import motionjavafx.metrics.Metrics;
 import motionjavafx.model.Gesture;
+import motionjavafx.model.FeatureVector;
 import motionjavafx.model.GestureDAO;
-import motionjavafx.model.HandGesture;
+import motionjavafx.model.GestureSchema;
+import motionjavafx.model.GestureRepository;
+import motionjavafx.model.HandSkeleton;
+import motionjavafx.model.MotionTemplate;
+import motionjavafx.recognition.GestureIndex;
+import motionjavafx.recognition.GestureMatch;
+import motionjavafx.recognition.GestureRecognizer;
+import motionjavafx.recognition.MotionMatch;
+import motionjavafx.recognition.MotionRecognizer;
+import motionjavafx.recognition.PrototypeCompressor;
+import motionjavafx.recognition.RecognitionEvent;
+import motionjavafx.recognition.RecognitionSmoother;
+import motionjavafx.recognition.SampleBurst;
+import motionjavafx.recognition.StabilityGate;
+import motionjavafx.tracking.FramePipeline;
+import motionjavafx.tracking.FrameRecorder;
+import motionjavafx.tracking.FrameReplaySource;
+import motionjavafx.tracking.FrameSource;
+import motionjavafx.tracking.LeapFrameSource;
+import motionjavafx.tracking.TrackingFrame;
+import motionjavafx.util.DBUtil;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collector;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class MotionJavaFx extends Application {
@@ -41,8 +66,11 @@ public class MotionJavaFx extends Application {
     final Xform cameraXform = new Xform();
     final Xform cameraXform2 = new Xform();
     final Xform cameraXform3 = new Xform();
-    final HandModel leftHand = new HandModel();
-    final HandModel rightHand = new HandModel();
+    final HandView leftHand = HandView.create();
+    final HandView rightHand = HandView.create();
+    // matched stored hands, drawn next to the live ones
+    final MeshHandModel leftTemplateHand = new MeshHandModel(MeshHandModel.createErrorMaterial());
+    final MeshHandModel rightTemplateHand = new MeshHandModel(MeshHandModel.createErrorMaterial());
     private static final double CAMERA_INITIAL_DISTANCE = -500;
     private static final double CAMERA_INITIAL_X_ANGLE = 70.0;
     private static final double CAMERA_INITIAL_Y_ANGLE = 320.0;
@@ -54,6 +82,20 @@ public class MotionJavaFx extends Application {
     private static final double MOUSE_SPEED = 0.1;
     private static final double ROTATION_SPEED = 2.0;
     private static final double TRACK_SPEED = 0.3;
+    private static final int RENDER_QUEUE_CAPACITY = 2;
+    private static final int RECOGNITION_QUEUE_CAPACITY = 1;
+    private static final int SMOOTHING_WINDOW = 7;
+    private static final int SMOOTHING_VOTES = 5;
+    private static final double SMOOTHING_ALPHA = 0.3;
+    private static final double SMOOTHING_ENTER_THRESHOLD = 90;
+    private static final double SMOOTHING_EXIT_THRESHOLD = 80;
+    private static final int MOTION_QUEUE_CAPACITY = 32;
+    private static final int MOTION_BAND = 3;
+    private static final double MOTION_THRESHOLD = 0.1;
+    private static final long RECONCILE_PERIOD_SECONDS = 5;
+    private static final int SAMPLE_QUEUE_CAPACITY = 32;
+    private static final int SAMPLE_COUNT = 10;
+    private static final int SAMPLE_INTERVAL = 5;
     @FXML
     public TextField gestureNameField;
     @FXML
@@ -62,8 +104,13 @@ public class MotionJavaFx extends Application {
     public TextField outputField;
     @FXML
     public TextField confidentialityField;
+    // motion matches are single events and bypass the frame smoother, so they get their own fields
     @FXML
-    public ListView gestureListView;
+    public TextField motionField;
+    @FXML
+    public TextField motionConfidentialityField;
+    @FXML
+    public ListView<Gesture> gestureListView;
 
     double mousePosX;
     double mousePosY;
@@ -71,9 +118,28 @@ public class MotionJavaFx extends Application {
     double mouseOldY;
     double mouseDeltaX;
     double mouseDeltaY;
-    private Controller controller;
     private UserInterfaceListener listener;
+    private MetricsOverlay metricsOverlay;
+    private FrameSource frameSource;
+    private FramePipeline<TrackingFrame> pipeline;
+    // set by saveGesture, filled and cleared by the sample stage thread
+    private volatile SampleBurst sampleBurst;
+    private volatile GestureRepository gestureRepository;
+    // only touched on the FX thread
     private ObservableList<Gesture> allGestures;
+    private volatile GestureRecognizer recognizer;
+    private RecognitionSmoother smoother;
+    // prototypes of the gesture names that did not change since the last recognizer was built
+    private final PrototypeCompressor.Cache prototypeCache = new PrototypeCompressor.Cache(
+            Integer.getInteger("motionjavafx.prototypes", PrototypeCompressor.DEFAULT_PROTOTYPES));
+    // each used by its stage thread only, null when gating is off
+    private StabilityGate recognitionGate;
+    private StabilityGate sampleGate;
+    private volatile MotionRecognizer[] motionRecognizers;
+    // one builder per side, left then right, null while not recording
+    private volatile MotionTemplate.Builder[] motionRecording;
+    // only used by the motion stage thread
+    private final FeatureVector motionFeatures = new FeatureVector();
 
     private void buildCamera() {
         root.getChildren().add(cameraXform);
@@ -230,17 +296,20 @@ public class MotionJavaFx extends Application {
         buildCamera();
         buildAxes();
         //buildMolecule();
-        controller = new Controller();
         Pane myPane = null;
         try {
-            myPane = FXMLLoader.load(getClass().getResource
-                    ("sample.fxml"));
+            // the application itself is the controller, so the handlers see the running pipeline
+            final FXMLLoader loader = new FXMLLoader(getClass().getResource("sample.fxml"));
+            loader.setControllerFactory(type -> this);
+            myPane = loader.load();
         } catch (IOException e) {
             e.printStackTrace();
         }
 
         world.getChildren().add(leftHand);
         world.getChildren().add(rightHand);
+        world.getChildren().add(leftTemplateHand);
+        world.getChildren().add(rightTemplateHand);
         // Create a Box
         root.getChildren().add(world);
         SubScene scene = new SubScene(root, 1024, 768);
@@ -250,151 +319,326 @@ public class MotionJavaFx extends Application {
         primaryStage.setTitle("LeapMotion Zeichensprache");
         Scene myScene = new Scene(myPane);
         primaryStage.setScene(myScene);
-        ((BorderPane) myPane).setCenter(scene);
+        if (MetricsOverlay.isEnabled()) {
+            metricsOverlay = new MetricsOverlay();
+            StackPane.setAlignment(metricsOverlay, Pos.TOP_LEFT);
+            ((BorderPane) myPane).setCenter(new StackPane(scene, metricsOverlay));
+            metricsOverlay.start();
+        } else {
+            ((BorderPane) myPane).setCenter(scene);
+        }
         primaryStage.setScene(myScene);
         primaryStage.show();
         gestureNameField = (TextField) myPane.lookup("#gestureNameField");
         errorField = (TextField) myPane.lookup("#errorField");
         confidentialityField = (TextField) myPane.lookup("#confidentialityField");
         outputField = (TextField) myPane.lookup("#outputField");
-        gestureListView = (ListView) myPane.lookup("#gestureListView");
+        motionField = (TextField) myPane.lookup("#motionField");
+        motionConfidentialityField = (TextField) myPane.lookup("#motionConfidentialityField");
+        @SuppressWarnings("unchecked")
+        final ListView<Gesture> listView = (ListView<Gesture>) myPane.lookup("#gestureListView");
+        gestureListView = listView;
         scene.setCamera(camera);
-        Thread t = new Thread() {
-            @Override
-            public void run() {
-                listener = new UserInterfaceListener(leftHand, rightHand);
-                while(true) {
-                    listener.handleFrame(controller.frame());
-                    try {
-                        Thread.sleep(50);
-                    } catch (InterruptedException e) {
-                        System.out.println(e);
-                    }
-
-                }
-                // Have the sample listener receive events from the controller
-                //controller.addListener(listener);
-            }
-
-        };
-        t.start();
+        Metrics.registerMBean();
         loadGesturesFromDB();
         gestureListView.setItems(allGestures);
 
-        Thread worker = new Thread() {
-            @Override
-            public void run() {
-                while (true) {
-                    try {
-                        Thread.sleep(200);
-                    } catch (InterruptedException e) {
-                        throw new IllegalStateException("Error while sleeping: " + e);
-                    }
-                    //controller = new Controller();
-                    Frame frame = controller.frame();
-                    Gesture gesture = getGestureFromFrame(frame);
-                    if (gesture == null) {
-                        continue;
-                    }
-                    Map<Gesture, Double> confidentialityMap = new HashMap<>();
-                    try {
-
-                        for (Gesture gestureFromDb : allGestures) {
-                            confidentialityMap.put(gestureFromDb, calcConfidentiality(gesture, gestureFromDb));
-                        }
-                        final Map.Entry<Gesture, Double> gestureDoubleEntry = confidentialityMap.entrySet().stream().max((o1, o2) -> o1.getValue().compareTo(o2.getValue())).get();
-                        outputField.setText(gestureDoubleEntry.getKey().getName());
-                        confidentialityField.setText(gestureDoubleEntry.getValue()+"");
-                    } catch (Exception e) {
-                        throw new IllegalStateException("Error while retrieving Data from DB, " + e);
-                    }
-                }
-            }
+        listener = new UserInterfaceListener(leftHand, rightHand, leftTemplateHand, rightTemplateHand);
+        listener.start();
+        smoother = new RecognitionSmoother(
+                Integer.getInteger("motionjavafx.smoothing.window", SMOOTHING_WINDOW),
+                Integer.getInteger("motionjavafx.smoothing.votes", SMOOTHING_VOTES),
+                SMOOTHING_ALPHA,
+                Double.parseDouble(System.getProperty("motionjavafx.smoothing.enter", String.valueOf(SMOOTHING_ENTER_THRESHOLD))),
+                Double.parseDouble(System.getProperty("motionjavafx.smoothing.exit", String.valueOf(SMOOTHING_EXIT_THRESHOLD))),
+                this::showRecognition);
+        if (Boolean.parseBoolean(System.getProperty("motionjavafx.gate", "true"))) {
+            recognitionGate = createGate(StabilityGate.DEFAULT_REFRESH_MICROS / 1000);
+            sampleGate = createGate(0);
+            Metrics.registerGauge("gate.passed", recognitionGate::getPassed);
+            Metrics.registerGauge("gate.held", recognitionGate::getHeld);
+        }
+        pipeline = new FramePipeline<TrackingFrame>()
+                .addStage("render", RENDER_QUEUE_CAPACITY,
+                        backPressureFromProperty("motionjavafx.render.backpressure", FramePipeline.BackPressure.DROP_OLDEST),
+                        listener::handleFrame)
+                .addStage("recognition", RECOGNITION_QUEUE_CAPACITY,
+                        backPressureFromProperty("motionjavafx.recognition.backpressure", FramePipeline.BackPressure.COALESCE),
+                        this::recognizeFrame)
+                .addStage("motion", MOTION_QUEUE_CAPACITY, FramePipeline.BackPressure.DROP_OLDEST, this::trackMotion)
+                .addStage("samples", SAMPLE_QUEUE_CAPACITY, FramePipeline.BackPressure.DROP_OLDEST, this::collectSamples);
+        pipeline.start();
 
-            private Double calcConfidentiality(Gesture gesture, Gesture gestureFromDb) {
-                double totalFailure = 0;
-                for (HandGesture handGesture : gesture.getHandGestures()) {
-                    final boolean rightHand = handGesture.isRightHand();
-                    final List<HandGesture> matchingHandGestures = gestureFromDb.getHandGestures().stream().
-                            filter(handGesture1 -> handGesture1.isRightHand() == rightHand)
-                            .collect(Collectors.toList());
-                    double minFailure = Double.MAX_VALUE;
-                    for (HandGesture matchingHandGesture : matchingHandGestures) {
-                        double failures = calcFailure(handGesture,matchingHandGesture);
-                        if (failures < minFailure) {
-                            minFailure = failures;
-                        }
-                    }
-                    totalFailure+=minFailure;
-                }
+        try {
+            frameSource = createFrameSource();
+        } catch (IOException e) {
+            throw new IllegalStateException("Error while opening frame source, " + e);
+        }
+        frameSource.start(frame -> {
+            final long start = Metrics.start();
+            frame.setReceivedAt(start);
+            pipeline.publish(frame);
+            Metrics.stop(Metrics.FRAME_INGEST, start);
+            Metrics.increment(Metrics.FRAMES);
+        });
+    }
 
-                return 100-totalFailure;
-            }
+    /**
+     * Live Leap frames by default. -Dmotionjavafx.replay=file plays a recording instead
+     * (speed factor from -Dmotionjavafx.replay.speed, "max" for as fast as possible),
+     * -Dmotionjavafx.record=file records everything that is shown.
+     */
+    private static FrameSource createFrameSource() throws IOException {
+        FrameSource source;
+        final String replayFile = System.getProperty("motionjavafx.replay");
+        if (replayFile != null) {
+            final String speed = System.getProperty("motionjavafx.replay.speed", "1");
+            source = new FrameReplaySource(Paths.get(replayFile),
+                    "max".equalsIgnoreCase(speed) ? FrameReplaySource.AS_FAST_AS_POSSIBLE : Double.parseDouble(speed),
+                    Boolean.getBoolean("motionjavafx.replay.loop"));
+        } else {
+            source = new LeapFrameSource();
+        }
+        final String recordFile = System.getProperty("motionjavafx.record");
+        if (recordFile != null) {
+            source = new FrameRecorder(source, Paths.get(recordFile));
+        }
+        return source;
+    }
 
-            private double calcFailure(HandGesture handGesture, HandGesture matchingHandGesture) {
-                double failures = 0;
+    /**
+     * Thresholds from -Dmotionjavafx.gate.speed (mm/s), -Dmotionjavafx.gate.confidence, -Dmotionjavafx.gate.hold
+     * and -Dmotionjavafx.gate.refresh (ms).
+     */
+    private static StabilityGate createGate(long refreshMillis) {
+        return new StabilityGate(
+                Float.parseFloat(System.getProperty("motionjavafx.gate.speed", String.valueOf(StabilityGate.DEFAULT_MAX_SPEED))),
+                Float.parseFloat(System.getProperty("motionjavafx.gate.confidence", String.valueOf(StabilityGate.DEFAULT_MIN_CONFIDENCE))),
+                Long.getLong("motionjavafx.gate.hold", StabilityGate.DEFAULT_HOLD_MICROS / 1000) * 1000,
+                Long.getLong("motionjavafx.gate.refresh", refreshMillis) * 1000);
+    }
 
-                for (int i = 0; i < handGesture.getAngles().size(); i++) {
-                    Angle a = handGesture.getAngles().get(i);
-                    Angle b = matchingHandGesture.getAngles().get(i);
-                    failures += Math.pow(a.getValue() - b.getValue(), 2);
-                }
+    /**
+     * Matches frames the gate lets through. Frames without hands still reach the smoother, so it can drop
+     * the last gesture, frames of a moving or badly tracked hand are skipped.
+     */
+    private void recognizeFrame(TrackingFrame frame) {
+        if (recognitionGate != null && !recognitionGate.accept(frame) && !frame.isEmpty()) {
+            return;
+        }
+        Gesture gesture = GestureRecognizer.toGesture(frame);
+        // null until the library is loaded, or if loading it failed
+        final GestureRecognizer current = recognizer;
+        final GestureMatch match = gesture == null || current == null ? null : current.best(gesture);
+        smoother.update(match, frame.getTimestamp());
+        Metrics.stop(Metrics.RECOGNITION, frame.getReceivedAt());
+        if (match == null) {
+            listener.handleMatch(null, null, null);
+        } else {
+            listener.handleMatch(gesture, match.getGesture(), current.getIndex().getScales());
+        }
+    }
 
-                return failures;
+    /**
+     * Feeds every frame to the motion recognizer of its hand, and to the recording if one is running.
+     * If the device reports two hands of one side, only the first is used.
+     */
+    private void trackMotion(TrackingFrame frame) {
+        final MotionRecognizer[] recognizers = motionRecognizers;
+        final MotionTemplate.Builder[] recording = motionRecording;
+        boolean leftSeen = false;
+        boolean rightSeen = false;
+        for (int i = 0; i < frame.getHandCount(); i++) {
+            final HandSkeleton hand = frame.getHand(i);
+            final int side = hand.isRightHand() ? 1 : 0;
+            if (side == 0 ? leftSeen : rightSeen) {
+                continue;
             }
+            leftSeen |= side == 0;
+            rightSeen |= side == 1;
+            motionFeatures.extract(hand);
+            if (recording != null) {
+                synchronized (recording) {
+                    recording[side].add(motionFeatures);
+                }
+            }
+            final MotionMatch match = recognizers[side].update(motionFeatures);
+            if (match != null) {
+                Platform.runLater(() -> {
+                    motionField.setText(match.getTemplate().getName());
+                    motionConfidentialityField.setText(100 - match.getCost() + "");
+                });
+            }
+        }
+        if (!leftSeen) {
+            recognizers[0].reset();
+        }
+        if (!rightSeen) {
+            recognizers[1].reset();
+        }
+    }
 
-        };
-        worker.start();
-
+    private void showRecognition(RecognitionEvent event) {
+        Platform.runLater(() -> {
+            outputField.setText(event.getGesture() == null ? "" : event.getGesture().getName());
+            confidentialityField.setText(event.getConfidentiality()+"");
+        });
+    }
 
-        // Remove the sample listener when done
-        //controller.removeListener(listener);
-        //primaryStage.close();
+    private static FramePipeline.BackPressure backPressureFromProperty(String property, FramePipeline.BackPressure defaultValue) {
+        final String value = System.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+        return FramePipeline.BackPressure.valueOf(value.trim().toUpperCase());
     }
 
+    /**
+     * With -Dmotionjavafx.library=file the compiled library is mapped and recognition starts at once,
+     * the database is then opened in the background. Otherwise the database is loaded right away.
+     */
     private void loadGesturesFromDB() {
+        allGestures = FXCollections.observableArrayList();
+        loadMotionTemplates(Collections.emptyList());
+        final String libraryFile = System.getProperty("motionjavafx.library");
+        if (libraryFile == null) {
+            openRepository();
+            return;
+        }
         try {
+            recognizer = new GestureRecognizer(GestureIndex.map(Paths.get(libraryFile)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Error while opening gesture library, " + e);
+        }
+        allGestures.setAll(recognizer.getIndex().getGestures());
+        final Thread loader = new Thread(this::openRepository, "gesture-repository");
+        loader.setDaemon(true);
+        loader.start();
+    }
 
-            allGestures = GestureDAO.getAllGestures();
+    /**
+     * Opens the repository and the motion templates, from the FX thread or a loader thread. The lists and
+     * recognizers shown by the UI are swapped in on the FX thread, a failure is shown in the error field.
+     */
+    private void openRepository() {
+        try {
+            final GestureRepository repository = GestureRepository.open();
+            final GestureRepository.Snapshot snapshot = repository.getSnapshot();
+            if (recognizer == null) {
+                recognizer = buildRecognizer(snapshot.getGestures());
+            }
+            final List<MotionTemplate> templates = GestureDAO.getAllMotionTemplates();
+            repository.addListener(this::gesturesChanged);
+            repository.startReconciliation(
+                    Long.getLong("motionjavafx.reconcile.seconds", RECONCILE_PERIOD_SECONDS), TimeUnit.SECONDS);
+            gestureRepository = repository;
+            // gestures the schema upgrade masked out are not matched any more, the user has to record them again
+            final String notice = GestureSchema.takeMigrationNotice();
+            Platform.runLater(() -> {
+                allGestures.setAll(snapshot.getGestures());
+                loadMotionTemplates(templates);
+                if (notice != null) {
+                    showError(notice);
+                }
+            });
         } catch (Exception e) {
-            throw new IllegalStateException("Error while retrieving Data from DB, " + e);
+            System.out.println("Error while retrieving Data from DB, " + e);
+            Platform.runLater(() -> showError("Error while retrieving Data from DB, " + e.getMessage()));
         }
     }
 
+    private void showError(String message) {
+        errorField.setVisible(true);
+        errorField.setText(message);
+    }
+
+    /**
+     * Called by the repository on every change, possibly off the FX thread.
+     */
+    private void gesturesChanged(GestureRepository.Snapshot snapshot) {
+        recognizer = buildRecognizer(snapshot.getGestures());
+        Platform.runLater(() -> allGestures.setAll(snapshot.getGestures()));
+    }
+
+    /**
+     * Matches against at most -Dmotionjavafx.prototypes samples per gesture.
+     */
+    private GestureRecognizer buildRecognizer(List<Gesture> gestures) {
+        return new GestureRecognizer(GestureIndex.buildCompressed(gestures, prototypeCache));
+    }
+
+    /**
+     * Replaces the motion recognizers, call on the FX thread.
+     */
+    private void loadMotionTemplates(List<MotionTemplate> templates) {
+        final int band = Integer.getInteger("motionjavafx.motion.band", MOTION_BAND);
+        final double threshold = Double.parseDouble(System.getProperty("motionjavafx.motion.threshold",
+                String.valueOf(MOTION_THRESHOLD)));
+        final MotionRecognizer[] recognizers = new MotionRecognizer[2];
+        for (int side = 0; side < 2; side++) {
+            final boolean right = side == 1;
+            recognizers[side] = new MotionRecognizer(templates.stream()
+                    .filter(template -> template.isRightHand() == right)
+                    .collect(Collectors.toList()), band, threshold);
+        }
+        motionRecognizers = recognizers;
+    }
+
     @Override
     public void stop() throws Exception {
         super.stop();
-        controller.delete();
-    }
-
-    private Gesture getGestureFromFrame(Frame frame) {
-        Gesture gesture = new Gesture();
-        gesture.setName(gestureNameField.getText());
-        if (frame.hands().isEmpty()) {
-            return null;
+        if (frameSource != null) {
+            frameSource.close();
         }
-        for (Hand hand : frame.hands()) {
-            List<Vector> fingerTips = new ArrayList<Vector>();
-            List<Vector> fingerBases = new ArrayList<Vector>();
-            for (Finger finger : hand.fingers()) {
-                fingerTips.add(finger.tipPosition());
-                fingerBases.add(finger.bone(Bone.Type.TYPE_PROXIMAL).center());
-            }
-            HandGesture handGesture = new HandGesture(fingerTips, fingerBases, hand.arm().wristPosition(), hand.isRight());
-            gesture.getHandGestures().add(handGesture);
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        Metrics.unregisterGauge("gate.passed");
+        Metrics.unregisterGauge("gate.held");
+        if (listener != null) {
+            listener.stop();
+        }
+        if (metricsOverlay != null) {
+            metricsOverlay.stop();
         }
-        return gesture;
+        if (gestureRepository != null) {
+            gestureRepository.close();
+        }
+        DBUtil.shutdown();
     }
 
+    /**
+     * Records the next -Dmotionjavafx.sample.count steady frames with hands, every -Dmotionjavafx.sample.interval-th,
+     * as samples of one gesture and saves it under the gesture name.
+     */
     public void saveGesture(Event event) {
-        controller = new Controller();
-        Frame frame = controller.frame();
-        Gesture gesture = getGestureFromFrame(frame);
+        if (gestureRepository == null) {
+            showError("The gesture library is not loaded");
+            return;
+        }
+        errorField.setVisible(false);
+        sampleBurst = new SampleBurst(gestureNameField.getText(),
+                Integer.getInteger("motionjavafx.sample.count", SAMPLE_COUNT),
+                Integer.getInteger("motionjavafx.sample.interval", SAMPLE_INTERVAL));
+    }
+
+    /**
+     * Only frames the gate lets through become samples, the gate sees every frame to keep track of the motion.
+     */
+    private void collectSamples(TrackingFrame frame) {
+        final boolean steady = sampleGate == null || sampleGate.accept(frame);
+        final SampleBurst burst = sampleBurst;
+        if (burst == null || !steady || !burst.add(frame)) {
+            return;
+        }
+        sampleBurst = null;
         try {
-            GestureDAO.insertGesture(gesture);
+            gestureRepository.add(burst.build());
         } catch (Exception e) {
-            errorField.setVisible(true);
-            errorField.setText(e.getMessage());
+            Platform.runLater(() -> {
+                errorField.setVisible(true);
+                errorField.setText(e.getMessage());
+            });
         }
     }
 
@@ -410,8 +654,50 @@ public class MotionJavaFx extends Application {
         launch(args);
     }
 
+    /**
+     * Starts recording a moving gesture, the next click stops and saves it under the gesture name,
+     * as one template for every hand that was tracked.
+     */
+    public void recordMotion(Event event) {
+        final Button button = (Button) event.getSource();
+        final MotionTemplate.Builder[] recording = motionRecording;
+        if (recording == null) {
+            motionRecording = new MotionTemplate.Builder[]{new MotionTemplate.Builder(), new MotionTemplate.Builder()};
+            button.setText("Stop");
+            return;
+        }
+        motionRecording = null;
+        button.setText("Bewegung");
+        final List<MotionTemplate> templates = new ArrayList<>();
+        synchronized (recording) {
+            for (int side = 0; side < recording.length; side++) {
+                if (recording[side].getLength() > 0) {
+                    templates.add(recording[side].build(gestureNameField.getText(), side == 1));
+                }
+            }
+        }
+        try {
+            for (MotionTemplate template : templates) {
+                GestureDAO.insertMotionTemplate(template);
+            }
+            loadMotionTemplates(GestureDAO.getAllMotionTemplates());
+        } catch (Exception e) {
+            errorField.setVisible(true);
+            errorField.setText(e.getMessage());
+        }
+    }
+
     public void refreshGestures(Event event) {
-        loadGesturesFromDB();
-        gestureListView.layout();
+        final GestureRepository repository = gestureRepository;
+        if (repository == null) {
+            return;
+        }
+        try {
+            repository.reconcile();
+            loadMotionTemplates(GestureDAO.getAllMotionTemplates());
+        } catch (Exception e) {
+            errorField.setVisible(true);
+            errorField.setText(e.getMessage());
+        }
     }
 }
\ No newline at end of file
@@ -1,101 +1,217 @@
 package motionjavafx;
 
-import com.leapmotion.leap.*;
-import javafx.application.Platform;
-import javafx.scene.shape.Sphere;
-import javafx.scene.transform.Translate;
+import javafx.animation.AnimationTimer;
+import motionjavafx.metrics.Metrics;
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+import motionjavafx.model.HandSkeleton;
+import motionjavafx.recognition.LinearGestureMatcher;
+import motionjavafx.tracking.TrackingFrame;
 
 /**
  * Created by lena on 11/3/16.
+ *
+ * Moves the hand models to the tracked joints. The tracking thread only copies the latest joint positions
+ * into a preallocated buffer, an {@link AnimationTimer} applies the newest state once per pulse on the
+ * FX thread. Frames arriving between two pulses simply overwrite each other, nothing is allocated.
+ *
+ * The recognition thread publishes the stored hands of the best match the same way, one per side. Each is
+ * drawn next to the live hand it was scored against, palm aligned, with every finger coloured by its share
+ * of the matching error.
  */
-class UserInterfaceListener  { //extends Listener {
-
-    private HandModel leftHand, rightHand;
+class UserInterfaceListener {
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+    private static final int STRIDE = HandSkeleton.FLOAT_COUNT;
+    private static final int TEMPLATE_STRIDE = HandGesture.SKELETON_FLOAT_COUNT;
+    // scene units between the live hand and the template
+    private static final float TEMPLATE_OFFSET = 60f;
+    // squared angle error per finger that is shown full red
+    private static final float MAX_FINGER_ERROR = 0.25f;
+
+    private final HandView[] handModels;
+    private final MeshHandModel[] templateModels;
+
+    // written by the tracking thread only
+    private final float[] back = new float[2 * STRIDE];
+    private final boolean[] backPresent = new boolean[2];
+    // written by the recognition thread only
+    private final float[] backTemplate = new float[2 * TEMPLATE_STRIDE];
+    private final float[][] backErrors = new float[2][HandSkeleton.FINGER_COUNT];
+    private final boolean[] backTemplatePresent = new boolean[2];
+    private final double[] backFailure = new double[2];
+    // handed over under the lock
+    private final Object lock = new Object();
+    private final float[] front = new float[2 * STRIDE];
+    private final boolean[] frontPresent = new boolean[2];
+    private long published = 0;
+    private final float[] frontTemplate = new float[2 * TEMPLATE_STRIDE];
+    private final float[][] frontErrors = new float[2][HandSkeleton.FINGER_COUNT];
+    private final boolean[] frontTemplatePresent = new boolean[2];
+    private long publishedTemplate = 0;
+    // read by the FX thread only
+    private final float[] render = new float[2 * STRIDE];
+    private final boolean[] renderPresent = new boolean[2];
+    private long applied = 0;
+    private final float[] renderTemplate = new float[2 * TEMPLATE_STRIDE];
+    private final float[][] renderErrors = new float[2][HandSkeleton.FINGER_COUNT];
+    private final boolean[] renderTemplatePresent = new boolean[2];
+    private long appliedTemplate = 0;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            final long start = Metrics.start();
+            applyLatest();
+            Metrics.stop(Metrics.FX_PULSE, start);
+        }
+    };
 
-    public UserInterfaceListener(HandModel leftHand, HandModel rightHand) {
-        this.leftHand = leftHand;
-        this.rightHand = rightHand;
+    public UserInterfaceListener(HandView leftHand, HandView rightHand) {
+        this(leftHand, rightHand, null, null);
     }
 
-    public void onInit(Controller controller) {
-        System.out.println("Initialized");
+    /**
+     * @param leftTemplate draws the matched stored left hand, null to not show it
+     * @param rightTemplate draws the matched stored right hand, null to not show it
+     */
+    public UserInterfaceListener(HandView leftHand, HandView rightHand, MeshHandModel leftTemplate,
+                                 MeshHandModel rightTemplate) {
+        this.handModels = new HandView[]{leftHand, rightHand};
+        this.templateModels = new MeshHandModel[]{leftTemplate, rightTemplate};
+        for (MeshHandModel templateModel : templateModels) {
+            if (templateModel != null) {
+                templateModel.setVisible(false);
+            }
+        }
     }
 
-    public void onConnect(Controller controller) {
-        System.out.println("Connected");
+    /**
+     * Starts applying frames to the scene, call on the FX thread.
+     */
+    public void start() {
+        timer.start();
     }
 
-    public void onDisconnect(Controller controller) {
-        //Note: not dispatched when running in a debugger.
-        System.out.println("Disconnected");
+    public void stop() {
+        timer.stop();
     }
 
-    public void onExit(Controller controller) {
-        System.out.println("Exited");
+    public void handleFrame(TrackingFrame frame) {
+        backPresent[LEFT] = false;
+        backPresent[RIGHT] = false;
+        for (int h = 0; h < frame.getHandCount(); h++) {
+            final HandSkeleton hand = frame.getHand(h);
+            final int side = hand.isRightHand() ? RIGHT : LEFT;
+            System.arraycopy(hand.getPoints(), 0, back, side * STRIDE, STRIDE);
+            backPresent[side] = true;
+        }
+        synchronized (lock) {
+            System.arraycopy(back, 0, front, 0, back.length);
+            frontPresent[LEFT] = backPresent[LEFT];
+            frontPresent[RIGHT] = backPresent[RIGHT];
+            published++;
+        }
     }
 
-    public void handleFrame(Frame frame) {
-        // Get the most recent frame and report some basic information
-        //Frame frame = controller.frame();
-
-        //Get hands
-        for (Hand hand : frame.hands()) {
-
-
-            // Get the hand's normal vector and direction
-            Vector origin = hand.palmPosition();
-
-
-            // Get arm bone
-            Arm arm = hand.arm();
-
-            // Get fingers
-            for (Finger finger : hand.fingers()) {
-
-                final HandModel handModel;
-                if (hand.isLeft()) {
-                    handModel = leftHand;
-                } else {
-                    handModel = rightHand;
+    /**
+     * Shows, per side, the hand of the matched gesture the live hands of that side were scored against: like
+     * {@link LinearGestureMatcher#calcConfidentiality(Gesture, Gesture, float[])} the pair with the lowest failure.
+     * Hides them if either gesture is null or the stored hand has no skeleton.
+     *
+     * @param scales per slot scales the match was scored with, see {@link motionjavafx.recognition.GestureIndex#getScales()}
+     */
+    public void handleMatch(Gesture live, Gesture match, float[] scales) {
+        backTemplatePresent[LEFT] = false;
+        backTemplatePresent[RIGHT] = false;
+        if (live != null && match != null) {
+            for (HandGesture hand : live.getHandGestures()) {
+                final HandGesture stored = LinearGestureMatcher.findClosestHand(hand, match, scales);
+                if (stored == null || stored.getSkeleton() == null) {
+                    continue;
+                }
+                final int side = hand.isRightHand() ? RIGHT : LEFT;
+                final double failure = LinearGestureMatcher.calcFailure(hand, stored, scales);
+                if (backTemplatePresent[side] && failure >= backFailure[side]) {
+                    continue;
                 }
-                final FingerModel fingerModel = handModel.getFingerByType(finger.type());
-                final Sphere fingerTip = fingerModel.getFingerTip();
-                final Vector tipPosition = finger.tipPosition();
-                //System.out.println("x: "+tipPosition.getX() + " y: "+tipPosition.getY());
-                moveSphereToVector(fingerTip, tipPosition);
-                //Get Bones
-                for (Bone.Type boneType : Bone.Type.values()) {
-                    Bone bone = finger.bone(boneType);
-                    final Sphere boneSphere = fingerModel.getBoneByType(bone.type());
-                    moveSphereToVector(boneSphere, bone.center());
+                backTemplatePresent[side] = true;
+                backFailure[side] = failure;
+                System.arraycopy(stored.getSkeleton(), 0, backTemplate, side * TEMPLATE_STRIDE, TEMPLATE_STRIDE);
+                LinearGestureMatcher.calcFingerFailure(hand.getFeatures(), stored.getFeatures(), scales, backErrors[side]);
+            }
+        }
+        synchronized (lock) {
+            for (int side = LEFT; side <= RIGHT; side++) {
+                if (backTemplatePresent[side]) {
+                    System.arraycopy(backTemplate, side * TEMPLATE_STRIDE, frontTemplate, side * TEMPLATE_STRIDE,
+                            TEMPLATE_STRIDE);
+                    System.arraycopy(backErrors[side], 0, frontErrors[side], 0, HandSkeleton.FINGER_COUNT);
                 }
+                frontTemplatePresent[side] = backTemplatePresent[side];
             }
+            publishedTemplate++;
         }
-      /*  try {
-            Thread.sleep(100); //60 FPS
-        } catch (InterruptedException e) {
-            System.out.println(e);
-        }*/
     }
 
-    private void moveSphereToVector(Sphere fingerTip, Vector tipPosition) {
-        final Translate translate = calcTranslation(fingerTip, tipPosition);
-        /*if (translate.determinant() < 1){
-            return;
-        } */
-        Platform.runLater(() -> {
-            fingerTip.getTransforms().add(translate);
-        });
-        fingerTip.setTranslateX(fingerTip.getTranslateX() + translate.getTx());
-        fingerTip.setTranslateY(fingerTip.getTranslateY() + translate.getTy());
-        fingerTip.setTranslateZ(fingerTip.getTranslateZ() + translate.getTz());
+    private void applyLatest() {
+        final boolean framesChanged;
+        final boolean templateChanged;
+        synchronized (lock) {
+            framesChanged = published != applied;
+            templateChanged = publishedTemplate != appliedTemplate;
+            if (framesChanged) {
+                applied = published;
+                System.arraycopy(front, 0, render, 0, front.length);
+                renderPresent[LEFT] = frontPresent[LEFT];
+                renderPresent[RIGHT] = frontPresent[RIGHT];
+            }
+            if (templateChanged) {
+                appliedTemplate = publishedTemplate;
+                System.arraycopy(frontTemplate, 0, renderTemplate, 0, frontTemplate.length);
+                for (int side = LEFT; side <= RIGHT; side++) {
+                    System.arraycopy(frontErrors[side], 0, renderErrors[side], 0, HandSkeleton.FINGER_COUNT);
+                    renderTemplatePresent[side] = frontTemplatePresent[side];
+                }
+            }
+        }
+        if (framesChanged) {
+            for (int side = LEFT; side <= RIGHT; side++) {
+                final HandView handModel = handModels[side];
+                handModel.setVisible(renderPresent[side]);
+                if (renderPresent[side]) {
+                    handModel.update(render, side * STRIDE);
+                }
+            }
+        }
+        if (framesChanged || templateChanged) {
+            for (int side = LEFT; side <= RIGHT; side++) {
+                applyTemplate(side, templateChanged);
+            }
+        }
     }
 
-    private Translate calcTranslation(Sphere fingerSphere, Vector tipPosition) {
-        final double deltaX = tipPosition.getX() / 5 - fingerSphere.getTranslateX();
-        final double deltaY = tipPosition.getY() / 5 - fingerSphere.getTranslateY();
-        final double deltaZ = tipPosition.getZ() / 5 - fingerSphere.getTranslateZ();
-        return new Translate(deltaX, deltaY, deltaZ);
+    private void applyTemplate(int side, boolean templateChanged) {
+        final MeshHandModel templateModel = templateModels[side];
+        if (templateModel == null) {
+            return;
+        }
+        final boolean visible = renderTemplatePresent[side] && renderPresent[side];
+        templateModel.setVisible(visible);
+        if (!visible) {
+            return;
+        }
+        if (templateChanged) {
+            templateModel.update(renderTemplate, side * TEMPLATE_STRIDE);
+            templateModel.setFingerErrors(renderErrors[side], MAX_FINGER_ERROR);
+        }
+        // move the stored palm next to the live palm
+        final int livePalm = side * STRIDE + HandSkeleton.PALM * 3;
+        final int templatePalm = side * TEMPLATE_STRIDE + HandSkeleton.PALM * 3;
+        final float direction = side == RIGHT ? 1 : -1;
+        templateModel.setTranslateX((render[livePalm] - renderTemplate[templatePalm]) / HandView.SCALE
+                + direction * TEMPLATE_OFFSET);
+        templateModel.setTranslateY((render[livePalm + 1] - renderTemplate[templatePalm + 1]) / HandView.SCALE);
+        templateModel.setTranslateZ((render[livePalm + 2] - renderTemplate[templatePalm + 2]) / HandView.SCALE);
     }
-
 }
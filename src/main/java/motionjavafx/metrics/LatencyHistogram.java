@@ -0,0 +1,138 @@
+package motionjavafx.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram in nanoseconds with log-linear buckets, like HdrHistogram:
+ * every power of two is split into 32 buckets, so any recorded value is off by at most 1/32 (about 3%).
+ * Recording is one atomic increment and never allocates. Values above about 18 minutes are clamped.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BITS = 40;
+    static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long nanos) {
+        final long value = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    /**
+     * Copies the current counts. Recording may go on meanwhile, the copy is not atomic but every count is exact.
+     */
+    public Snapshot snapshot() {
+        final long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, max.get());
+    }
+
+    static int indexOf(long value) {
+        final int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Smallest value that falls into the bucket.
+     */
+    static long lowestValueAt(int index) {
+        final int shift = Math.max(0, (index >>> SUB_BUCKET_BITS) - 1);
+        return (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+    }
+
+    /**
+     * Counts of a histogram at one point in time. The getters are what JMX shows.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+        private final double mean;
+
+        private Snapshot(long[] counts, long max) {
+            this.counts = counts;
+            this.max = max;
+            long total = 0;
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    total += counts[i];
+                    sum += counts[i] * (double) midValueAt(i);
+                }
+            }
+            this.count = total;
+            this.mean = total == 0 ? 0 : sum / total;
+        }
+
+        private static long midValueAt(int index) {
+            return (lowestValueAt(index) + lowestValueAt(index + 1) - 1) / 2;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Value in nanoseconds below or at which the given percentage (0-100) of the recorded values lie,
+         * 0 if nothing was recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(max, lowestValueAt(i + 1) - 1);
+                }
+            }
+            return max;
+        }
+
+        public double getMeanMillis() {
+            return mean / NANOS_PER_MILLI;
+        }
+
+        public double getP50Millis() {
+            return getValueAtPercentile(50) / NANOS_PER_MILLI;
+        }
+
+        public double getP99Millis() {
+            return getValueAtPercentile(99) / NANOS_PER_MILLI;
+        }
+
+        public double getMaxMillis() {
+            return max / NANOS_PER_MILLI;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package motionjavafx.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process wide latency histograms, counters and gauges of the frame path, switched on with -Dmotionjavafx.metrics=true.
+ *
+ * Instrumented code brackets its work with {@link #start()} and {@link #stop(LatencyHistogram, long)}.
+ * {@link #ENABLED} is a constant, so when metrics are off the JIT removes the calls altogether and
+ * not even the clock is read.
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("motionjavafx.metrics");
+    public static final String OBJECT_NAME = "motionjavafx:type=Metrics";
+
+    /** Conversion of a tracker frame and handing it to the pipeline. */
+    public static final LatencyHistogram FRAME_INGEST = new LatencyHistogram("ingest");
+    /** Features of all hands of one frame. */
+    public static final LatencyHistogram FEATURE_EXTRACTION = new LatencyHistogram("extraction");
+    /** Best match of one gesture against the library. */
+    public static final LatencyHistogram MATCHING = new LatencyHistogram("matching");
+    /** From the arrival of a frame to its recognition result. */
+    public static final LatencyHistogram RECOGNITION = new LatencyHistogram("recognition");
+    /** Applying the newest state to the scene in one FX pulse. */
+    public static final LatencyHistogram FX_PULSE = new LatencyHistogram("pulse");
+    /** One statement against the database. */
+    public static final LatencyHistogram DB_CALL = new LatencyHistogram("db");
+
+    public static final LongAdder FRAMES = new LongAdder();
+
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Start time for {@link #stop(LatencyHistogram, long)}, 0 when metrics are off.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    public static void stop(LatencyHistogram histogram, long start) {
+        if (ENABLED) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    public static void increment(LongAdder counter) {
+        if (ENABLED) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Publishes a value that is read only when the metrics are looked at, e.g. a queue size.
+     */
+    public static void registerGauge(String name, LongSupplier gauge) {
+        if (ENABLED) {
+            gauges.put(name, gauge);
+        }
+    }
+
+    public static void unregisterGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * Current gauge values by name.
+     */
+    public static Map<String, Long> readGauges() {
+        final Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        return values;
+    }
+
+    public static LatencyHistogram[] histograms() {
+        return new LatencyHistogram[]{FRAME_INGEST, FEATURE_EXTRACTION, MATCHING, RECOGNITION, FX_PULSE, DB_CALL};
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : histograms()) {
+            histogram.reset();
+        }
+        FRAMES.reset();
+    }
+
+    /**
+     * Makes the metrics visible in JConsole/VisualVM under {@link #OBJECT_NAME}. Does nothing when metrics are off.
+     */
+    public static void registerMBean() {
+        if (!ENABLED) {
+            return;
+        }
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMXBeanImpl(), name);
+            }
+        } catch (JMException e) {
+            System.out.println("Error while registering metrics MBean, " + e);
+        }
+    }
+
+    public interface MetricsMXBean {
+        long getFrames();
+
+        LatencyHistogram.Snapshot getFrameIngest();
+
+        LatencyHistogram.Snapshot getFeatureExtraction();
+
+        LatencyHistogram.Snapshot getMatching();
+
+        LatencyHistogram.Snapshot getRecognition();
+
+        LatencyHistogram.Snapshot getFxPulse();
+
+        LatencyHistogram.Snapshot getDbCall();
+
+        Map<String, Long> getGauges();
+
+        void reset();
+    }
+
+    private static final class MetricsMXBeanImpl implements MetricsMXBean {
+        @Override
+        public long getFrames() {
+            return FRAMES.sum();
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getFrameIngest() {
+            return FRAME_INGEST.snapshot();
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getFeatureExtraction() {
+            return FEATURE_EXTRACTION.snapshot();
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getMatching() {
+            return MATCHING.snapshot();
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getRecognition() {
+            return RECOGNITION.snapshot();
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getFxPulse() {
+            return FX_PULSE.snapshot();
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getDbCall() {
+            return DB_CALL.snapshot();
+        }
+
+        @Override
+        public Map<String, Long> getGauges() {
+            return readGauges();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
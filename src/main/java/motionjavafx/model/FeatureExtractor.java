@@ -0,0 +1,181 @@
+package motionjavafx.model;
+
+/**
+ * Computes the {@link FeatureVector} of a hand in a coordinate frame attached to the palm, so the features
+ * only depend on the pose of the hand and not on where and how it is held above the device.
+ *
+ * The frame is derived from the joints alone, so stored skeletons (which end at the wrist) give the same
+ * result as live hands: origin at the palm, z from the wrist to the knuckle of the middle finger, y out of
+ * the back of the hand and x across the knuckles towards the thumb. Only the rigid part of the hand
+ * spans the frame, so bending a finger does not move it. Left hands are mirrored into the same frame.
+ *
+ * One pass moves the palm, the wrist and all finger joints into this frame, a second one walks the bones of
+ * every finger from metacarpal to tip:
+ * FTOB is the flexion of the finger, the sum of the angles between consecutive bones at its knuckle and
+ * its two finger joints.
+ * FTOF is the spread between two fingers, the angle between their proximal bones in the palm plane.
+ * BTOW is the signed elevation of the middle proximal bone out of the palm plane, negative when bent
+ * towards the palm.
+ * Slots that depend on a finger that is not tracked are left absent, so they drop out of every distance.
+ *
+ * Allocation free, but not thread safe. {@link FeatureVector#extract(HandSkeleton)} keeps one per thread.
+ */
+public final class FeatureExtractor {
+    private static final int LOCAL_POINTS = HandSkeleton.WRIST + 1;
+    private static final int FINGER_STRIDE = HandSkeleton.JOINTS_PER_FINGER * 3;
+    private static final int MIDDLE = 2;
+    private static final float EPSILON = 1.192092896e-07f;
+    private static final float PI = (float) Math.PI;
+
+    private final float[] local = new float[LOCAL_POINTS * 3];
+    private final float[] headings = new float[HandSkeleton.FINGER_COUNT];
+
+    public void extract(HandSkeleton skeleton, FeatureVector target) {
+        extract(skeleton.getPoints(), skeleton.isRightHand(), skeleton.getFingerMask(), target);
+    }
+
+    /**
+     * Features of a hand with all fingers tracked.
+     *
+     * @param points joint positions laid out like {@link HandSkeleton#getPoints()}, at least up to the wrist,
+     *               e.g. {@link HandGesture#getSkeleton()}
+     */
+    public void extract(float[] points, boolean rightHand, FeatureVector target) {
+        extract(points, rightHand, HandSkeleton.ALL_FINGERS, target);
+    }
+
+    /**
+     * Only slots of tracked fingers are set in target: FTOB of the finger, FTOF of every pair the finger is in
+     * and BTOW for the middle finger. A finger counts as tracked if its bit in fingerMask is set and none of its
+     * proximal, intermediate and distal bones has collapsed to a point, which is how the device reports fingers
+     * it lost.
+     *
+     * @param fingerMask tracked fingers, see {@link HandSkeleton#getFingerMask()}
+     */
+    public void extract(float[] points, boolean rightHand, int fingerMask, FeatureVector target) {
+        toPalmFrame(points, rightHand);
+        target.clear();
+        int tracked = fingerMask;
+        float middleElevation = 0;
+        for (int f = 0; f < HandSkeleton.FINGER_COUNT; f++) {
+            int p = f * FINGER_STRIDE;
+            float px = local[p + 3] - local[p];
+            float py = local[p + 4] - local[p + 1];
+            float pz = local[p + 5] - local[p + 2];
+            // the metacarpal is left out, the device reports it with zero length for the thumb,
+            // where it then adds no bend
+            boolean solid = true;
+            float flexion = 0;
+            for (int joint = HandSkeleton.PROXIMAL; joint < HandSkeleton.TIP; joint++) {
+                p += 3;
+                final float sx = local[p + 3] - local[p];
+                final float sy = local[p + 4] - local[p + 1];
+                final float sz = local[p + 5] - local[p + 2];
+                solid &= sx * sx + sy * sy + sz * sz > EPSILON;
+                flexion += angle(px, py, pz, sx, sy, sz);
+                if (joint == HandSkeleton.PROXIMAL) {
+                    headings[f] = (float) Math.atan2(sx, sz);
+                    if (f == MIDDLE) {
+                        middleElevation = (float) Math.atan2(sy, Math.sqrt(sx * sx + sz * sz));
+                    }
+                }
+                px = sx;
+                py = sy;
+                pz = sz;
+            }
+            if (!solid) {
+                tracked &= ~(1 << f);
+            } else if ((tracked & (1 << f)) != 0) {
+                target.set(FeatureVector.FTOB_OFFSET + f, flexion);
+            }
+        }
+        int slot = FeatureVector.FTOF_OFFSET;
+        for (int i = 0; i < HandSkeleton.FINGER_COUNT; i++) {
+            for (int j = i + 1; j < HandSkeleton.FINGER_COUNT; j++, slot++) {
+                if ((tracked & (1 << i)) != 0 && (tracked & (1 << j)) != 0) {
+                    float spread = Math.abs(headings[i] - headings[j]);
+                    if (spread > PI) {
+                        spread = 2 * PI - spread;
+                    }
+                    target.set(slot, spread);
+                }
+            }
+        }
+        if ((tracked & (1 << MIDDLE)) != 0) {
+            target.set(FeatureVector.BTOW_OFFSET, middleElevation);
+        }
+    }
+
+    /**
+     * Fills local with the palm relative coordinates of the first {@link #LOCAL_POINTS} points.
+     * A degenerate frame (e.g. all joints in one spot) has zero axes and maps every point to the origin.
+     */
+    private void toPalmFrame(float[] points, boolean rightHand) {
+        final int palm = HandSkeleton.PALM * 3;
+        final int wrist = HandSkeleton.WRIST * 3;
+        // the knuckles, where the metacarpals end
+        final int middle = HandSkeleton.jointIndex(MIDDLE, HandSkeleton.PROXIMAL) * 3;
+        final int index = HandSkeleton.jointIndex(1, HandSkeleton.PROXIMAL) * 3;
+        final int pinky = HandSkeleton.jointIndex(4, HandSkeleton.PROXIMAL) * 3;
+        // z from the wrist along the middle metacarpal
+        float zx = points[middle] - points[wrist];
+        float zy = points[middle + 1] - points[wrist + 1];
+        float zz = points[middle + 2] - points[wrist + 2];
+        float length = inverseLength(zx, zy, zz);
+        zx *= length;
+        zy *= length;
+        zz *= length;
+        // y = z x across, across points from pinky to index, flipped for left hands
+        final float ax = points[index] - points[pinky];
+        final float ay = points[index + 1] - points[pinky + 1];
+        final float az = points[index + 2] - points[pinky + 2];
+        final float side = rightHand ? 1 : -1;
+        float yx = zy * az - zz * ay;
+        float yy = zz * ax - zx * az;
+        float yz = zx * ay - zy * ax;
+        length = side * inverseLength(yx, yy, yz);
+        yx *= length;
+        yy *= length;
+        yz *= length;
+        // x = y x z points towards the thumb for right hands, mirrored for left hands
+        final float xx = side * (yy * zz - yz * zy);
+        final float xy = side * (yz * zx - yx * zz);
+        final float xz = side * (yx * zy - yy * zx);
+        final float ox = points[palm];
+        final float oy = points[palm + 1];
+        final float oz = points[palm + 2];
+        for (int p = 0; p < LOCAL_POINTS * 3; p += 3) {
+            final float dx = points[p] - ox;
+            final float dy = points[p + 1] - oy;
+            final float dz = points[p + 2] - oz;
+            local[p] = dx * xx + dy * xy + dz * xz;
+            local[p + 1] = dx * yx + dy * yy + dz * yz;
+            local[p + 2] = dx * zx + dy * zy + dz * zz;
+        }
+    }
+
+    /**
+     * 1 / length, or 0 for a vector too short to have a direction.
+     */
+    private static float inverseLength(float x, float y, float z) {
+        final float squared = x * x + y * y + z * z;
+        return squared <= EPSILON ? 0f : (float) (1 / Math.sqrt(squared));
+    }
+
+    /**
+     * Angle between two segments, 0 if either has no length.
+     */
+    private static float angle(float ax, float ay, float az, float bx, float by, float bz) {
+        final float denom = (ax * ax + ay * ay + az * az) * (bx * bx + by * by + bz * bz);
+        if (denom <= EPSILON) {
+            return 0.0f;
+        }
+        final float val = (ax * bx + ay * by + az * bz) / (float) Math.sqrt(denom);
+        if (val >= 1.0f) {
+            return 0.0f;
+        } else if (val <= -1.0f) {
+            return PI;
+        }
+        return (float) Math.acos(val);
+    }
+}
@@ -0,0 +1,201 @@
+package motionjavafx.model;
+
+import java.util.Arrays;
+
+/**
+ * The 16 angle features of one hand in a fixed layout:
+ * 5 FTOB (flexion of every finger), 10 FTOF (spread of every finger pair, in (0,1), (0,2) ... (3,4) order)
+ * and 1 BTOW (elevation of the middle proximal bone), all measured in the palm frame, see {@link FeatureExtractor}.
+ * Before schema version 4 the same slots held angles between joints seen from the device origin.
+ *
+ * A slot can be absent, e.g. for legacy rows that stored fewer angles. Absent slots are
+ * skipped when comparing vectors.
+ */
+public class FeatureVector {
+    public static final int FTOB_OFFSET = 0;
+    public static final int FTOB_COUNT = 5;
+    public static final int FTOF_OFFSET = FTOB_OFFSET + FTOB_COUNT;
+    public static final int FTOF_COUNT = 10;
+    public static final int BTOW_OFFSET = FTOF_OFFSET + FTOF_COUNT;
+    public static final int BTOW_COUNT = 1;
+    public static final int LENGTH = BTOW_OFFSET + BTOW_COUNT;
+    public static final int FULL_MASK = (1 << LENGTH) - 1;
+
+    private static final ThreadLocal<FeatureExtractor> EXTRACTORS = ThreadLocal.withInitial(FeatureExtractor::new);
+
+    private final float[] values = new float[LENGTH];
+    private int mask;
+
+    public FeatureVector() {
+    }
+
+    /**
+     * Computes all features of a tracked hand into this vector with a {@link FeatureExtractor} of the
+     * calling thread, without allocating after the first call.
+     */
+    public void extract(HandSkeleton skeleton) {
+        EXTRACTORS.get().extract(skeleton, this);
+    }
+
+    public static int offset(Angle.AngleType angleType) {
+        switch (angleType) {
+            case FTOB:
+                return FTOB_OFFSET;
+            case FTOF:
+                return FTOF_OFFSET;
+            default:
+                return BTOW_OFFSET;
+        }
+    }
+
+    public static int count(Angle.AngleType angleType) {
+        switch (angleType) {
+            case FTOB:
+                return FTOB_COUNT;
+            case FTOF:
+                return FTOF_COUNT;
+            default:
+                return BTOW_COUNT;
+        }
+    }
+
+    public static Angle.AngleType typeOf(int slot) {
+        if (slot < FTOF_OFFSET) {
+            return Angle.AngleType.FTOB;
+        } else if (slot < BTOW_OFFSET) {
+            return Angle.AngleType.FTOF;
+        }
+        return Angle.AngleType.BTOW;
+    }
+
+    public float get(int slot) {
+        return values[slot];
+    }
+
+    public void set(int slot, float value) {
+        values[slot] = value;
+        mask |= 1 << slot;
+    }
+
+    /**
+     * Puts the value into the first free slot of its angle type.
+     */
+    public int add(Angle.AngleType angleType, float value) {
+        final int offset = offset(angleType);
+        for (int slot = offset; slot < offset + count(angleType); slot++) {
+            if (!isPresent(slot)) {
+                set(slot, value);
+                return slot;
+            }
+        }
+        throw new IllegalStateException("All " + angleType + " slots are already set");
+    }
+
+    public boolean isPresent(int slot) {
+        return (mask & (1 << slot)) != 0;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    public int size() {
+        return Integer.bitCount(mask);
+    }
+
+    public void clear() {
+        mask = 0;
+    }
+
+    /**
+     * Replaces all slots with LENGTH values starting at offset, present where mask is set.
+     */
+    public void setAll(float[] source, int offset, int mask) {
+        System.arraycopy(source, offset, values, 0, LENGTH);
+        this.mask = mask & FULL_MASK;
+    }
+
+    public void copyFrom(FeatureVector other) {
+        System.arraycopy(other.values, 0, values, 0, LENGTH);
+        mask = other.mask;
+    }
+
+    /**
+     * Direct access to the slot values, only meaningful where {@link #isPresent(int)}.
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+    /**
+     * Sum of squared differences over the slots present in both vectors, scaled by {@link #LENGTH} over their
+     * count, so vectors with missing slots are not closer just because fewer slots are summed.
+     */
+    public double squaredDistance(FeatureVector other) {
+        final int common = mask & other.mask;
+        double sum = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            if ((common & (1 << i)) != 0) {
+                final float difference = values[i] - other.values[i];
+                sum += (double) difference * difference;
+            }
+        }
+        return normalize(sum, common);
+    }
+
+    /**
+     * Scales a sum over the common slots to all {@link #LENGTH} slots, 0 if there is no common slot.
+     */
+    public static double normalize(double sum, int common) {
+        if (common == FULL_MASK || common == 0) {
+            return sum;
+        }
+        return sum * LENGTH / Integer.bitCount(common);
+    }
+
+    /**
+     * Squared distance after multiplying both vectors slot by slot with scales,
+     * e.g. from motionjavafx.recognition.FeatureWeighting, normalized like {@link #squaredDistance(FeatureVector)}.
+     */
+    public double squaredDistance(FeatureVector other, float[] scales) {
+        final int common = mask & other.mask;
+        double sum = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            if ((common & (1 << i)) != 0) {
+                final float difference = values[i] * scales[i] - other.values[i] * scales[i];
+                sum += (double) difference * difference;
+            }
+        }
+        return normalize(sum, common);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        FeatureVector that = (FeatureVector) o;
+
+        if (mask != that.mask) return false;
+        for (int i = 0; i < LENGTH; i++) {
+            if (isPresent(i) && Float.compare(values[i], that.values[i]) != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mask;
+        for (int i = 0; i < LENGTH; i++) {
+            if (isPresent(i)) {
+                result = 31 * result + Float.floatToIntBits(values[i]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values) + " mask: " + Integer.toBinaryString(mask);
+    }
+}
@@ -1,7 +1,9 @@
 package motionjavafx.model;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by lena on 10/24/16.
@@ -64,4 +66,15 @@ public class Gesture {
     public void setHandGestures(List<HandGesture> handGestures) {
         this.handGestures = handGestures;
     }
+
+    /**
+     * The hands grouped by {@link HandGesture#getSample()}, in the order the samples first appear.
+     */
+    public List<List<HandGesture>> getSamples() {
+        final Map<Integer, List<HandGesture>> samples = new LinkedHashMap<>();
+        for (HandGesture handGesture : handGestures) {
+            samples.computeIfAbsent(handGesture.getSample(), sample -> new ArrayList<>()).add(handGesture);
+        }
+        return new ArrayList<>(samples.values());
+    }
 }
@@ -4,32 +4,47 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import motionjavafx.util.DBUtil;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Created by lena on 10/24/16.
  */
 public class GestureDAO {
 
+    //Rows of one gesture are adjacent
+    private static final String SELECT_ALL_HANDS = "SELECT g.id, g.name, hg.id, hg.IsRightHand, hg.mask, hg.features, hg.skeleton, "
+            + "hg.sample FROM Gesture g JOIN HandGesture hg ON g.id = hg.gestureid ORDER BY g.id, hg.id";
+
     public static ObservableList<Gesture> getAllGestures() throws SQLException, ClassNotFoundException {
-        //Declare a SELECT statement
-        String selectStmt = "SELECT g.name, g.id, a.value, a.angletype, hg.IsRightHand, hg.id FROM Gesture g, Angle a, HandGesture hg where g.id = hg.gestureid and hg.id = a.handgestureid";
+        //Declare a observable List which comprises of Gesture objects
+        final List<Gesture> gestureList = new ArrayList<>();
+        forEachGesture(gestureList::add);
+        return FXCollections.observableArrayList(gestureList);
+    }
 
+    /**
+     * Streams the library to the consumer one complete gesture at a time, ordered by id.
+     * Only the gesture being assembled is held in memory.
+     */
+    public static void forEachGesture(Consumer<Gesture> consumer) throws SQLException, ClassNotFoundException {
         //Execute SELECT statement
         try {
-            //Get ResultSet from dbExecuteQuery method
-            ResultSet resultSetGestures = DBUtil.dbExecuteQuery(selectStmt);
-
-            //Send ResultSet to the getGestureList method and get Gesture object
-            ObservableList<Gesture> gestureList = getGestureList(resultSetGestures);
-
-            //Return Gesture object
-            return gestureList;
+            GestureSchema.ensureCurrent();
+            final GestureAssembler assembler = new GestureAssembler(consumer);
+            DBUtil.dbExecuteQuery(SELECT_ALL_HANDS, assembler);
+            assembler.finish();
         } catch (SQLException e) {
             System.out.println("SQL select operation has been failed: " + e);
             //Return exception
@@ -37,89 +52,294 @@ public class GestureDAO {
         }
     }
 
-    //Select * from Gestures operation
-    private static ObservableList<Gesture> getGestureList(ResultSet rs) throws SQLException, ClassNotFoundException {
-        //Declare a observable List which comprises of Gesture objects
-        ObservableList<Gesture> gestureList = FXCollections.observableArrayList();
-        Map<String, Gesture> gestureMap = new HashMap<>();
-        Map<Integer, HandGesture> handGestureMap = new HashMap<>();
-
-        while (rs.next()) {
-            String name = rs.getString(1);
-            if (!gestureMap.containsKey(name)) {
-                Gesture gesture = new Gesture();
-                gesture.setId(rs.getInt(2));
-                gesture.setName(name);
-                gestureList.add(gesture);
-                gestureMap.put(name,gesture);
+    /**
+     * Builds gestures from rows ordered by gesture id, handing each one on when its last row has been read.
+     */
+    private static final class GestureAssembler implements DBUtil.RowHandler {
+        private final Consumer<Gesture> consumer;
+        private final float[] values = new float[FeatureVector.LENGTH];
+        private Gesture current;
+
+        GestureAssembler(Consumer<Gesture> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void handle(ResultSet rs) throws SQLException {
+            final int gestureId = rs.getInt(1);
+            if (current == null || current.getId() != gestureId) {
+                finish();
+                current = new Gesture();
+                current.setId(gestureId);
+                current.setName(rs.getString(2));
+            }
+            final HandGesture handGesture = new HandGesture();
+            handGesture.setId(rs.getInt(3));
+            handGesture.setIsRightHand(rs.getBoolean(4));
+            readFeatures(rs.getBytes(6), rs.getInt(5), values, handGesture.getFeatures());
+            final byte[] skeleton = rs.getBytes(7);
+            if (skeleton != null && skeleton.length == HandGesture.SKELETON_FLOAT_COUNT * 4) {
+                handGesture.setSkeleton(fromBlob(skeleton));
             }
-            Gesture gesture = gestureMap.get(name);
-            final int hgId = rs.getInt(6);
-            if (!handGestureMap.containsKey(hgId)) {
-                HandGesture handGesture = new HandGesture();
-                handGesture.setId(hgId);
-                handGesture.setIsRightHand(rs.getBoolean(5));
-                handGestureMap.put(hgId,handGesture);
+            handGesture.setSample(rs.getInt(8));
+            current.getHandGestures().add(handGesture);
+        }
+
+        void finish() {
+            if (current != null) {
+                consumer.accept(current);
+                current = null;
             }
-            HandGesture handGesture = handGestureMap.get(hgId);
-            if (!gesture.getHandGestures().contains(handGesture)){
-                gesture.getHandGestures().add(handGesture);
+        }
+    }
+
+    /**
+     * One gesture with all its hands, or null if there is no such gesture.
+     */
+    public static Gesture getGesture(int id) throws SQLException, ClassNotFoundException {
+        GestureSchema.ensureCurrent();
+        final PreparedStatement preparedStatement = DBUtil.createPreparedStatement(
+                "SELECT g.id, g.name, hg.id, hg.IsRightHand, hg.mask, hg.features, hg.skeleton, hg.sample "
+                        + "FROM Gesture g JOIN HandGesture hg ON g.id = hg.gestureid WHERE g.id = ? ORDER BY hg.id");
+        preparedStatement.setInt(1, id);
+        final Gesture[] gesture = new Gesture[1];
+        final GestureAssembler assembler = new GestureAssembler(loaded -> gesture[0] = loaded);
+        DBUtil.executePreparedStatementQuery(preparedStatement, assembler);
+        assembler.finish();
+        return gesture[0];
+    }
+
+    /**
+     * A short fingerprint per gesture id that changes when the gesture is renamed, its hands are replaced
+     * or the side, sample, features or skeleton of a hand are updated, in the format of {@link #stamp(Gesture)}.
+     */
+    public static Map<Integer, String> getGestureStamps() throws SQLException, ClassNotFoundException {
+        GestureSchema.ensureCurrent();
+        final Map<Integer, String> stamps = new LinkedHashMap<>();
+        final StampCollector collector = new StampCollector(stamps);
+        DBUtil.dbExecuteQuery(SELECT_ALL_HANDS, collector);
+        collector.finish();
+        return stamps;
+    }
+
+    public static String stamp(Gesture gesture) {
+        int maxHandId = 0;
+        int contentHash = 1;
+        for (HandGesture handGesture : gesture.getHandGestures()) {
+            maxHandId = Math.max(maxHandId, handGesture.getId());
+            contentHash = 31 * contentHash + handHash(handGesture.isRightHand(), handGesture.getSample(),
+                    handGesture.getFeatures(), handGesture.getSkeleton());
+        }
+        return stamp(gesture.getName(), gesture.getHandGestures().size(), maxHandId, contentHash);
+    }
+
+    private static String stamp(String name, int handCount, int maxHandId, int contentHash) {
+        return (name == null ? "" : name) + "#" + handCount + "#" + maxHandId + "#" + Integer.toHexString(contentHash);
+    }
+
+    private static int handHash(boolean rightHand, int sample, FeatureVector features, float[] skeleton) {
+        return 31 * (31 * (31 * (rightHand ? 1 : 0) + sample) + features.hashCode()) + Arrays.hashCode(skeleton);
+    }
+
+    /**
+     * Computes {@link #stamp(Gesture)} from the rows of {@link #SELECT_ALL_HANDS} without building the gestures.
+     */
+    private static final class StampCollector implements DBUtil.RowHandler {
+        private final Map<Integer, String> stamps;
+        private final float[] values = new float[FeatureVector.LENGTH];
+        private final FeatureVector features = new FeatureVector();
+        private int gestureId;
+        private String name;
+        private int handCount;
+        private int maxHandId;
+        private int contentHash;
+
+        StampCollector(Map<Integer, String> stamps) {
+            this.stamps = stamps;
+        }
+
+        @Override
+        public void handle(ResultSet rs) throws SQLException {
+            final int id = rs.getInt(1);
+            if (handCount == 0 || id != gestureId) {
+                finish();
+                gestureId = id;
+                name = rs.getString(2);
+                maxHandId = 0;
+                contentHash = 1;
             }
-            Angle angle = new Angle();
-            angle.setValue(rs.getFloat(3));
-            angle.setAngleType(Angle.AngleType.fromInt(rs.getInt(4)));
-            handGesture.getAngles().add(angle);
+            handCount++;
+            maxHandId = Math.max(maxHandId, rs.getInt(3));
+            readFeatures(rs.getBytes(6), rs.getInt(5), values, features);
+            final byte[] skeleton = rs.getBytes(7);
+            contentHash = 31 * contentHash + handHash(rs.getBoolean(4), rs.getInt(8), features,
+                    skeleton != null && skeleton.length == HandGesture.SKELETON_FLOAT_COUNT * 4 ? fromBlob(skeleton) : null);
+        }
 
+        void finish() {
+            if (handCount > 0) {
+                stamps.put(gestureId, stamp(name, handCount, maxHandId, contentHash));
+                handCount = 0;
+            }
         }
-        //return gestureList (ObservableList of Gestures)
-        return gestureList;
+    }
+
+    /**
+     * SQLite's PRAGMA data_version of the calling thread's connection, it changes whenever another
+     * connection commits.
+     */
+    public static long getDataVersion() throws SQLException, ClassNotFoundException {
+        final long[] version = {0};
+        DBUtil.dbExecuteQuery("PRAGMA data_version", rs -> version[0] = rs.getLong(1));
+        return version[0];
+    }
+
+    //*************************************
+    //DELETE an Gesture
+    //*************************************
+    public static void deleteGesture(int id) throws SQLException, ClassNotFoundException {
+        GestureSchema.ensureCurrent();
+        DBUtil.inTransaction(() -> {
+            PreparedStatement preparedStatement = DBUtil.createPreparedStatement("DELETE FROM handgesture WHERE gestureid = ?");
+            preparedStatement.setInt(1, id);
+            DBUtil.executePreparedStatementUpdate(preparedStatement);
+            preparedStatement = DBUtil.createPreparedStatement("DELETE FROM gesture WHERE id = ?");
+            preparedStatement.setInt(1, id);
+            DBUtil.executePreparedStatementUpdate(preparedStatement);
+            return null;
+        });
     }
 
     //*************************************
     //INSERT an Gesture
     //*************************************
-    public static void insertGesture(Gesture gesture) throws SQLException, ClassNotFoundException {
-        //Declare a DELETE statement
-
-        final int maxGestureId = getMaxidFromTable("gesture");
-        int maxHandGestureId = getMaxidFromTable("handgesture");
-        int maxAngleId = getMaxidFromTable("angle");
-        final String insertStatement = "INSERT INTO gesture (id,name) values (?,?)";
-        final String insert = "INSERT INTO handgesture (id,gestureid,isrighthand) values (?,?,?)";
-        final String insertangle = "INSERT INTO angle (angletype,handgestureid,id,value) values (?,?,?,?)";
-
-        final PreparedStatement preparedStatement = DBUtil.createPreparedStatement(insertStatement);
-        preparedStatement.setInt(1, maxGestureId);
-        preparedStatement.setString(2, gesture.getName());
-        DBUtil.executePreparedStatementUpdate(preparedStatement);
+    private static final String INSERT_GESTURE = "INSERT INTO gesture (name) values (?)";
+    private static final String INSERT_HAND_GESTURE = "INSERT INTO handgesture (gestureid,isrighthand,mask,features,skeleton,sample) "
+            + "values (?,?,?,?,?,?)";
 
+    /**
+     * Inserts the gesture in one transaction and sets the ids the database generated once it is committed.
+     */
+    public static void insertGesture(Gesture gesture) throws SQLException, ClassNotFoundException {
+        insertGestures(Collections.singletonList(gesture));
+    }
 
-        for (HandGesture handGesture : gesture.getHandGestures()) {
-            final PreparedStatement preparedStatement2 = DBUtil.createPreparedStatement(insert);
-            preparedStatement2.setInt(1, maxHandGestureId++);
-            preparedStatement2.setInt(2, maxGestureId);
-            preparedStatement2.setShort(3, (short) (handGesture.isRightHand() ? 1 : 0));
-            DBUtil.executePreparedStatementUpdate(preparedStatement2);
-
-            for (Angle angle : handGesture.getAngles()) {
-                final PreparedStatement preparedStatement3 = DBUtil.createPreparedStatement(insertangle);
-                preparedStatement3.setInt(1, angle.getAngleType().getNumber());
-                preparedStatement3.setInt(2, maxHandGestureId - 1);
-                preparedStatement3.setInt(3, maxAngleId++);
-                preparedStatement3.setFloat(4, angle.getValue());
-                DBUtil.executePreparedStatementUpdate(preparedStatement3);
+    /**
+     * Inserts all gestures in one transaction, e.g. to import a whole library.
+     * Nothing is written if one insert fails, and the ids of the gestures and their hands are only set
+     * after the transaction succeeded, so a rollback leaves them as they were.
+     * Inside an outer {@link DBUtil#inTransaction} the ids are set when this call returns.
+     */
+    public static void insertGestures(Collection<Gesture> gestures) throws SQLException, ClassNotFoundException {
+        GestureSchema.ensureCurrent();
+        final int[] ids = DBUtil.inTransaction(() -> {
+            final PreparedStatement gestureStatement = DBUtil.createInsertStatement(INSERT_GESTURE);
+            final PreparedStatement handStatement = DBUtil.createInsertStatement(INSERT_HAND_GESTURE);
+            int idCount = gestures.size();
+            for (Gesture gesture : gestures) {
+                idCount += gesture.getHandGestures().size();
             }
+            // gesture id followed by its hand ids, in iteration order
+            final int[] generated = new int[idCount];
+            int next = 0;
+            for (Gesture gesture : gestures) {
+                gestureStatement.setString(1, gesture.getName());
+                final int gestureId = DBUtil.executePreparedStatementInsert(gestureStatement);
+                generated[next++] = gestureId;
 
+                for (HandGesture handGesture : gesture.getHandGestures()) {
+                    final FeatureVector features = handGesture.getFeatures();
+                    handStatement.setInt(1, gestureId);
+                    handStatement.setShort(2, (short) (handGesture.isRightHand() ? 1 : 0));
+                    handStatement.setInt(3, features.getMask());
+                    handStatement.setBytes(4, toBlob(features.getValues()));
+                    handStatement.setBytes(5, handGesture.getSkeleton() == null ? null : toBlob(handGesture.getSkeleton()));
+                    handStatement.setInt(6, handGesture.getSample());
+                    generated[next++] = DBUtil.executePreparedStatementInsert(handStatement);
+                }
+            }
+            return generated;
+        });
+        int next = 0;
+        for (Gesture gesture : gestures) {
+            gesture.setId(ids[next++]);
+            for (HandGesture handGesture : gesture.getHandGestures()) {
+                handGesture.setId(ids[next++]);
+            }
         }
+    }
+
+    //*************************************
+    //Motion templates
+    //*************************************
+    public static void insertMotionTemplate(MotionTemplate template) throws SQLException, ClassNotFoundException {
+        GestureSchema.ensureCurrent();
+        final PreparedStatement preparedStatement = DBUtil.createPreparedStatement(
+                "INSERT INTO MotionTemplate (name,isrighthand,framecount,features,masks) values (?,?,?,?,?)");
+        preparedStatement.setString(1, template.getName());
+        preparedStatement.setShort(2, (short) (template.isRightHand() ? 1 : 0));
+        preparedStatement.setInt(3, template.getLength());
+        preparedStatement.setBytes(4, toBlob(template.getFrames()));
+        preparedStatement.setBytes(5, toBlob(template.getMasks()));
+        DBUtil.executePreparedStatementUpdate(preparedStatement);
+    }
 
+    /**
+     * All motion templates, those stored without frame masks have every slot present.
+     */
+    public static List<MotionTemplate> getAllMotionTemplates() throws SQLException, ClassNotFoundException {
+        GestureSchema.ensureCurrent();
+        final List<MotionTemplate> templates = new ArrayList<>();
+        DBUtil.dbExecuteQuery("SELECT id, name, isrighthand, features, masks FROM MotionTemplate order by id", rs -> {
+            final byte[] masks = rs.getBytes(5);
+            final MotionTemplate template = masks == null
+                    ? new MotionTemplate(rs.getString(2), rs.getBoolean(3), fromBlob(rs.getBytes(4)))
+                    : new MotionTemplate(rs.getString(2), rs.getBoolean(3), fromBlob(rs.getBytes(4)), intsFromBlob(masks));
+            template.setId(rs.getInt(1));
+            templates.add(template);
+        });
+        return templates;
+    }
 
+    /**
+     * Packs floats little-endian, 4 bytes each.
+     */
+    static byte[] toBlob(float[] values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
     }
 
-    private static int getMaxidFromTable(String tablename) throws SQLException, ClassNotFoundException {
-        final ResultSet resultSet = DBUtil.dbExecuteQuery("select ifnull(max(id),0) from " + tablename);
-        if (resultSet.next()) {
-            return resultSet.getInt(1) + 1;
+    /**
+     * Decodes one hand's feature BLOB into target, using values as scratch. A missing BLOB gives no features.
+     */
+    static void readFeatures(byte[] blob, int mask, float[] values, FeatureVector target) {
+        if (blob == null || blob.length < FeatureVector.LENGTH * 4) {
+            target.clear();
+            return;
         }
-        throw new IllegalStateException("Error when executing query");
+        ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values, 0, FeatureVector.LENGTH);
+        target.setAll(values, 0, mask);
+    }
+
+    static float[] fromBlob(byte[] blob) {
+        final float[] values = new float[blob.length / 4];
+        ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Packs ints little-endian, 4 bytes each.
+     */
+    static byte[] toBlob(int[] values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(values);
+        return buffer.array();
+    }
+
+    static int[] intsFromBlob(byte[] blob) {
+        final int[] values = new int[blob.length / 4];
+        ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+        return values;
     }
 }
@@ -0,0 +1,178 @@
+package motionjavafx.model;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory gesture library backed by {@link GestureDAO}, the single source of truth for the application.
+ *
+ * Readers get an immutable {@link Snapshot} without locking. Every change publishes a new snapshot
+ * (copy on write) and notifies the listeners on the thread that made the change.
+ * Edits made by other processes are picked up by {@link #reconcile()}, which only reloads the gestures
+ * whose fingerprint changed and does nothing while SQLite's data_version stays the same.
+ */
+public class GestureRepository implements AutoCloseable {
+
+    /**
+     * The library at one point in time, ordered by gesture id.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final List<Gesture> gestures;
+
+        private Snapshot(long version, List<Gesture> gestures) {
+            this.version = version;
+            this.gestures = Collections.unmodifiableList(gestures);
+        }
+
+        /**
+         * Increases with every change.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Gesture> getGestures() {
+            return gestures;
+        }
+    }
+
+    private final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot;
+    private ScheduledExecutorService reconciler;
+    // data_version is per connection, and connections are per thread
+    private Thread dataVersionThread;
+    private long dataVersion;
+
+    private GestureRepository(List<Gesture> gestures) {
+        this.snapshot = new Snapshot(0, gestures);
+    }
+
+    /**
+     * Loads the library once.
+     */
+    public static GestureRepository open() throws SQLException, ClassNotFoundException {
+        final List<Gesture> gestures = new ArrayList<>();
+        GestureDAO.forEachGesture(gestures::add);
+        return new GestureRepository(gestures);
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void addListener(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Snapshot> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stores the gesture and adds it to the library.
+     */
+    public synchronized void add(Gesture gesture) throws SQLException, ClassNotFoundException {
+        GestureDAO.insertGesture(gesture);
+        final List<Gesture> gestures = new ArrayList<>(snapshot.getGestures());
+        gestures.add(gesture);
+        publish(gestures);
+    }
+
+    /**
+     * Deletes the gesture with the id of the given one.
+     */
+    public synchronized void delete(Gesture gesture) throws SQLException, ClassNotFoundException {
+        GestureDAO.deleteGesture(gesture.getId());
+        final List<Gesture> gestures = new ArrayList<>(snapshot.getGestures());
+        gestures.removeIf(stored -> stored.getId() == gesture.getId());
+        publish(gestures);
+    }
+
+    /**
+     * Brings the library up to date with the database. Returns true if anything changed.
+     */
+    public synchronized boolean reconcile() throws SQLException, ClassNotFoundException {
+        final long version = GestureDAO.getDataVersion();
+        if (dataVersionThread == Thread.currentThread() && version == dataVersion) {
+            return false;
+        }
+        dataVersionThread = Thread.currentThread();
+        dataVersion = version;
+        final Map<Integer, Gesture> known = new HashMap<>();
+        for (Gesture gesture : snapshot.getGestures()) {
+            known.put(gesture.getId(), gesture);
+        }
+        final Map<Integer, String> stamps = GestureDAO.getGestureStamps();
+        boolean changed = stamps.size() != known.size();
+        final List<Gesture> gestures = new ArrayList<>(stamps.size());
+        for (Map.Entry<Integer, String> stamp : stamps.entrySet()) {
+            Gesture gesture = known.get(stamp.getKey());
+            if (gesture == null || !stamp.getValue().equals(GestureDAO.stamp(gesture))) {
+                gesture = GestureDAO.getGesture(stamp.getKey());
+                changed = true;
+            }
+            if (gesture != null) {
+                gestures.add(gesture);
+            }
+        }
+        if (changed) {
+            publish(gestures);
+        }
+        return changed;
+    }
+
+    /**
+     * Runs {@link #reconcile()} on a daemon thread every period.
+     */
+    public synchronized void startReconciliation(long period, TimeUnit unit) {
+        if (reconciler != null) {
+            return;
+        }
+        reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "gesture-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (Exception e) {
+                System.out.println("Error while reconciling gestures, " + e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops the reconciliation and waits for a running one to finish, so its connection can be closed.
+     */
+    @Override
+    public synchronized void close() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+            try {
+                reconciler.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reconciler = null;
+        }
+    }
+
+    private void publish(List<Gesture> gestures) {
+        final Snapshot next = new Snapshot(snapshot.getVersion() + 1, gestures);
+        snapshot = next;
+        for (Consumer<Snapshot> listener : listeners) {
+            listener.accept(next);
+        }
+    }
+}
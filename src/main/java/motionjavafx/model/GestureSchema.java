@@ -0,0 +1,290 @@
+package motionjavafx.model;
+
+import motionjavafx.util.DBUtil;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Creates and upgrades the gesture tables.
+ *
+ * Version 1 stored one Angle row per feature. Since version 2 every HandGesture row carries its
+ * features as one little-endian float BLOB of {@link FeatureVector#LENGTH} values plus the mask of
+ * present slots, and the Angle table is gone. Version 3 adds the joint positions the hand was recorded
+ * with as a float BLOB of {@link HandGesture#SKELETON_FLOAT_COUNT} values, null for older rows.
+ * Version 4 measures the features in the palm frame ({@link FeatureExtractor}), they are recomputed from the
+ * skeleton where there is one. Hands without one and all motion templates cannot be converted, their device
+ * origin features are kept but masked out, so they never match and should be recorded again.
+ * Version 5 adds the mask of every motion template frame as a little-endian int BLOB, null for rows stored
+ * with version 4, which have all slots present.
+ * Version 6 stores the finger joints in the skeleton instead of the bone centres, older skeletons are converted
+ * ({@link HandSkeleton#centresToJoints(float[])}) and their features recomputed. The motion templates are
+ * masked out again, their features were measured between the bone centres.
+ * Version 7 adds the sample index of every hand ({@link HandGesture#getSample()}). Older hands are split into
+ * samples in id order, a new sample starting whenever a side repeats, which is how one frame after the other
+ * was stored.
+ */
+public class GestureSchema {
+    public static final int VERSION = 7;
+
+    private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS SchemaVersion (version integer)";
+    private static final String CREATE_GESTURE_TABLE = "CREATE TABLE IF NOT EXISTS Gesture "
+            + "(id integer primary key, name text)";
+    private static final String CREATE_HAND_GESTURE_TABLE = "CREATE TABLE IF NOT EXISTS HandGesture "
+            + "(Gestureid integer, id integer primary key, isrighthand smallint, mask integer, features blob, skeleton blob, "
+            + "sample integer)";
+    private static final String CREATE_MOTION_TABLE = "CREATE TABLE IF NOT EXISTS MotionTemplate "
+            + "(id integer primary key, name text, isrighthand smallint, framecount integer, features blob, masks blob)";
+    private static final int UPDATE_BATCH_SIZE = 1024;
+
+    private static volatile String currentFor;
+    // what the last migration could not convert, until the application shows it
+    private static String migrationNotice;
+
+    private GestureSchema() {
+    }
+
+    /**
+     * Brings the database at {@link DBUtil#connStr} to {@link #VERSION}, once per connection string.
+     */
+    public static void ensureCurrent() throws SQLException, ClassNotFoundException {
+        final String url = DBUtil.connStr;
+        if (url.equals(currentFor)) {
+            return;
+        }
+        synchronized (GestureSchema.class) {
+            if (url.equals(currentFor)) {
+                return;
+            }
+            final String notice = DBUtil.inTransaction(() -> {
+                final int version = readVersion();
+                if (version > VERSION) {
+                    throw new IllegalStateException("Error while opening database, schema version " + version
+                            + " is newer than " + VERSION);
+                }
+                if (version == 1) {
+                    migrateAngles();
+                }
+                if (version == 1 || version == 2) {
+                    DBUtil.dbExecuteUpdate("ALTER TABLE HandGesture ADD COLUMN skeleton blob");
+                }
+                // before the features are recomputed, which masks the old templates out with it
+                if (version >= 1 && version < 5 && tableExists("MotionTemplate")) {
+                    DBUtil.dbExecuteUpdate("ALTER TABLE MotionTemplate ADD COLUMN masks blob");
+                }
+                final String unconverted = version >= 1 && version < 6 ? recomputeFeatures() : null;
+                if (version >= 1 && version < 7) {
+                    DBUtil.dbExecuteUpdate("ALTER TABLE HandGesture ADD COLUMN sample integer");
+                    assignSamples();
+                }
+                if (version < VERSION) {
+                    DBUtil.dbExecuteUpdate(CREATE_GESTURE_TABLE);
+                    DBUtil.dbExecuteUpdate(CREATE_HAND_GESTURE_TABLE);
+                    DBUtil.dbExecuteUpdate(CREATE_MOTION_TABLE);
+                    DBUtil.dbExecuteUpdate(CREATE_VERSION_TABLE);
+                    DBUtil.dbExecuteUpdate("DELETE FROM SchemaVersion");
+                    DBUtil.dbExecuteUpdate("INSERT INTO SchemaVersion (version) values (" + VERSION + ")");
+                }
+                return unconverted;
+            });
+            // only once the upgrade is committed
+            if (notice != null) {
+                migrationNotice = notice;
+            }
+            currentFor = url;
+        }
+    }
+
+    /**
+     * The gestures and motion templates the last migration had to mask out, null if there were none or the
+     * notice was already taken. Clears the notice, so it is shown once.
+     */
+    public static synchronized String takeMigrationNotice() {
+        final String notice = migrationNotice;
+        migrationNotice = null;
+        return notice;
+    }
+
+    /**
+     * 0 for an empty database, 1 for the original Angle row layout.
+     */
+    private static int readVersion() throws SQLException, ClassNotFoundException {
+        if (tableExists("SchemaVersion")) {
+            final int[] version = {0};
+            DBUtil.dbExecuteQuery("SELECT ifnull(max(version),0) FROM SchemaVersion", rs -> version[0] = rs.getInt(1));
+            return version[0];
+        }
+        return tableExists("Gesture") ? 1 : 0;
+    }
+
+    private static boolean tableExists(String name) throws SQLException, ClassNotFoundException {
+        final PreparedStatement statement = DBUtil.createPreparedStatement(
+                "SELECT count(*) FROM sqlite_master WHERE type = 'table' AND lower(name) = lower(?)");
+        statement.setString(1, name);
+        try (ResultSet rs = DBUtil.executePreparedStatementQuery(statement)) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    /**
+     * Packs the Angle rows of every hand gesture into its features column and drops the Angle table.
+     */
+    private static void migrateAngles() throws SQLException, ClassNotFoundException {
+        DBUtil.dbExecuteUpdate("ALTER TABLE HandGesture ADD COLUMN mask integer");
+        DBUtil.dbExecuteUpdate("ALTER TABLE HandGesture ADD COLUMN features blob");
+        if (tableExists("Angle")) {
+            final PreparedStatement update = DBUtil.createPreparedStatement(
+                    "UPDATE HandGesture SET mask = ?, features = ? WHERE id = ?");
+            update.clearBatch();
+            final AngleMigration migration = new AngleMigration(update);
+            DBUtil.dbExecuteQuery("SELECT handgestureid, angletype, value FROM Angle ORDER BY handgestureid, id",
+                    migration);
+            migration.flush();
+            update.executeBatch();
+            DBUtil.dbExecuteUpdate("DROP TABLE Angle");
+        }
+        DBUtil.dbExecuteUpdate("UPDATE HandGesture SET mask = 0 WHERE mask IS NULL");
+    }
+
+    /**
+     * Converts the bone centres of every hand stored with a skeleton into joints and replaces its features by
+     * the palm frame features of the joints. The other hands and all motion templates get empty masks, so they
+     * are not compared with palm frame features, and are reported. Returns the report, null if all were converted.
+     */
+    private static String recomputeFeatures() throws SQLException, ClassNotFoundException {
+        final PreparedStatement update = DBUtil.createPreparedStatement(
+                "UPDATE HandGesture SET mask = ?, features = ?, skeleton = ? WHERE id = ?");
+        update.clearBatch();
+        final FeatureExtractor extractor = new FeatureExtractor();
+        final FeatureVector features = new FeatureVector();
+        final int[] batched = {0};
+        DBUtil.dbExecuteQuery("SELECT id, isrighthand, skeleton FROM HandGesture WHERE skeleton IS NOT NULL", rs -> {
+            final byte[] skeleton = rs.getBytes(3);
+            if (skeleton.length != HandGesture.SKELETON_FLOAT_COUNT * 4) {
+                return;
+            }
+            final float[] joints = GestureDAO.fromBlob(skeleton);
+            HandSkeleton.centresToJoints(joints);
+            extractor.extract(joints, rs.getBoolean(2), features);
+            update.setInt(1, features.getMask());
+            update.setBytes(2, GestureDAO.toBlob(features.getValues()));
+            update.setBytes(3, GestureDAO.toBlob(joints));
+            update.setInt(4, rs.getInt(1));
+            update.addBatch();
+            if (++batched[0] == UPDATE_BATCH_SIZE) {
+                update.executeBatch();
+                batched[0] = 0;
+            }
+        });
+        update.executeBatch();
+        final int[] legacy = {0, 0};
+        final String unconverted = "skeleton IS NULL OR length(skeleton) != " + HandGesture.SKELETON_FLOAT_COUNT * 4;
+        DBUtil.dbExecuteQuery("SELECT count(*) FROM HandGesture WHERE " + unconverted, rs -> legacy[0] = rs.getInt(1));
+        DBUtil.dbExecuteUpdate("UPDATE HandGesture SET mask = 0 WHERE " + unconverted);
+        if (tableExists("MotionTemplate")) {
+            DBUtil.dbExecuteQuery("SELECT count(*) FROM MotionTemplate", rs -> legacy[1] = rs.getInt(1));
+            // one zero int per frame of 16 floats
+            DBUtil.dbExecuteUpdate("UPDATE MotionTemplate SET masks = zeroblob(length(features) / " + FeatureVector.LENGTH + ")");
+        }
+        if (legacy[0] > 0 || legacy[1] > 0) {
+            final String notice = legacy[0] + " hand gestures without skeleton and " + legacy[1]
+                    + " motion templates cannot be converted to joint features and are no longer matched, record them again";
+            System.out.println(notice);
+            return notice;
+        }
+        return null;
+    }
+
+    /**
+     * Numbers the samples of every gesture from 0, starting a new one when a side repeats.
+     */
+    private static void assignSamples() throws SQLException, ClassNotFoundException {
+        final PreparedStatement update = DBUtil.createPreparedStatement("UPDATE HandGesture SET sample = ? WHERE id = ?");
+        update.clearBatch();
+        DBUtil.dbExecuteQuery("SELECT id, gestureid, isrighthand FROM HandGesture ORDER BY gestureid, id",
+                new SampleMigration(update));
+        update.executeBatch();
+    }
+
+    /**
+     * Collects the Angle rows of one hand gesture at a time into a batched update.
+     */
+    private static final class AngleMigration implements DBUtil.RowHandler {
+        private final PreparedStatement update;
+        private final FeatureVector features = new FeatureVector();
+        private int handGestureId;
+        private boolean pending = false;
+        private int batched = 0;
+
+        AngleMigration(PreparedStatement update) {
+            this.update = update;
+        }
+
+        @Override
+        public void handle(ResultSet rs) throws SQLException {
+            final int id = rs.getInt(1);
+            if (pending && id != handGestureId) {
+                flush();
+            }
+            handGestureId = id;
+            pending = true;
+            features.add(Angle.AngleType.fromInt(rs.getInt(2)), rs.getFloat(3));
+        }
+
+        void flush() throws SQLException {
+            if (pending) {
+                update.setInt(1, features.getMask());
+                update.setBytes(2, GestureDAO.toBlob(features.getValues()));
+                update.setInt(3, handGestureId);
+                update.addBatch();
+                // clear() keeps the values, the absent slots of the next hand must not carry this one's
+                Arrays.fill(features.getValues(), 0f);
+                features.clear();
+                pending = false;
+                if (++batched == UPDATE_BATCH_SIZE) {
+                    update.executeBatch();
+                    batched = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Assigns the sample of every hand row of {@link #assignSamples()} into a batched update.
+     */
+    private static final class SampleMigration implements DBUtil.RowHandler {
+        private final PreparedStatement update;
+        private int gestureId;
+        private int sample = -1;
+        // sides seen in the current sample, 1 left and 2 right
+        private int sides;
+        private int batched = 0;
+
+        SampleMigration(PreparedStatement update) {
+            this.update = update;
+        }
+
+        @Override
+        public void handle(ResultSet rs) throws SQLException {
+            final int side = rs.getBoolean(3) ? 2 : 1;
+            if (sample < 0 || rs.getInt(2) != gestureId) {
+                gestureId = rs.getInt(2);
+                sample = 0;
+                sides = 0;
+            } else if ((sides & side) != 0) {
+                sample++;
+                sides = 0;
+            }
+            sides |= side;
+            update.setInt(1, sample);
+            update.setInt(2, rs.getInt(1));
+            update.addBatch();
+            if (++batched == UPDATE_BATCH_SIZE) {
+                update.executeBatch();
+                batched = 0;
+            }
+        }
+    }
+}
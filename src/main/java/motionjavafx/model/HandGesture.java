@@ -1,58 +1,35 @@
 package motionjavafx.model;
 
-import com.leapmotion.leap.Vector;
-
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Created by lena on 10/23/16.
  */
 public class HandGesture {
-
-    private List<Vector> fingerTips = new ArrayList<>();
-    private List<Vector> fingerBases = new ArrayList <>();
-    private List<Angle> angles = new ArrayList<>();
+    /**
+     * Size of a skeleton snapshot: the points of a {@link HandSkeleton} up to and including the wrist.
+     */
+    public static final int SKELETON_FLOAT_COUNT = (HandSkeleton.WRIST + 1) * 3;
+
+    private final FeatureVector features = new FeatureVector();
+    private float[] skeleton;
+    private final List<Angle> angles = new AngleView();
     private boolean rightHand = false;
     private int id;
+    private int sample;
 
     public HandGesture() {
     }
 
-    public HandGesture(List<Vector> fingerTips, List<Vector> fingerBases, Vector wrist, boolean rightHand) {
-        this.fingerTips = fingerTips;
-        this.fingerBases = fingerBases;
-        this.rightHand = rightHand;
-
-
-        calcFingerTipToBaseAngles(fingerTips, fingerBases);
-
-        calcFingerTipToTipAngles(fingerTips);
-
-        calcAngleProxToMetacarp(this.fingerBases.get(2), wrist);
-    }
-
-    private void calcFingerTipToTipAngles(List<Vector> fingerTips) {
-        for (int i = 0; i < 5; i++){
-            for (int j = i+1;j < 5; j++) {
-                final float angleValue = calcAngle(fingerTips.get(i), fingerTips.get(j));
-                Angle angle = new Angle();
-                angle.setAngleType(Angle.AngleType.FTOF);
-                angle.setValue(angleValue);
-                this.angles.add(angle);
-            }
-        }
-    }
-
-    private void calcFingerTipToBaseAngles(List<Vector> fingerTips, List<Vector> fingerBases) {
-        for (int i = 0; i < 5; i++)
-        {
-            final float angleValue = calcAngle(fingerTips.get(i), fingerBases.get(i));
-            Angle angle = new Angle();
-            angle.setAngleType(Angle.AngleType.FTOB);
-            angle.setValue(angleValue);
-            this.angles.add(angle);
-        }
+    /**
+     * Palm frame features of a tracked skeleton, see {@link FeatureExtractor}.
+     */
+    public HandGesture(HandSkeleton skeleton) {
+        this.rightHand = skeleton.isRightHand();
+        features.extract(skeleton);
+        this.skeleton = Arrays.copyOf(skeleton.getPoints(), SKELETON_FLOAT_COUNT);
     }
 
     public int getId() {
@@ -63,8 +40,27 @@ public class HandGesture {
         this.id = id;
     }
 
-    private float calcAngle(Vector pointA, Vector pointB) {
-        return pointA.angleTo(pointB);
+    /**
+     * Index of the sample within its gesture, hands with the same index were recorded in the same frame,
+     * e.g. the left and right hand of a two hand sign.
+     */
+    public int getSample() {
+        return sample;
+    }
+
+    public void setSample(int sample) {
+        this.sample = sample;
+    }
+
+    /**
+     * Copies id, side, sample, features and skeleton, the skeleton array is shared.
+     */
+    public void copyFrom(HandGesture other) {
+        id = other.id;
+        rightHand = other.rightHand;
+        sample = other.sample;
+        features.copyFrom(other.features);
+        skeleton = other.skeleton;
     }
 
     public boolean isRightHand() {
@@ -83,29 +79,76 @@ public class HandGesture {
         HandGesture that = (HandGesture) o;
 
         if (rightHand != that.rightHand) return false;
-        return angles.equals(that.angles);
+        return features.equals(that.features);
 
     }
 
     @Override
     public int hashCode() {
-        int result = angles.hashCode();
+        int result = features.hashCode();
         result = 31 * result + (rightHand ? 1 : 0);
         return result;
     }
 
-    private void calcAngleProxToMetacarp (Vector prox, Vector wrist){
-        final float angleValue = calcAngle(prox, wrist);
-        Angle angle = new Angle();
-        angle.setAngleType(Angle.AngleType.BTOW);
-        angle.setValue(angleValue);
-        this.angles.add(angle);
+    /**
+     * Joint positions the gesture was recorded with, laid out like {@link HandSkeleton#getPoints()}
+     * but only up to the wrist. Null for gestures stored without one.
+     */
+    public float[] getSkeleton() {
+        return skeleton;
     }
 
+    public void setSkeleton(float[] skeleton) {
+        if (skeleton != null && skeleton.length != SKELETON_FLOAT_COUNT) {
+            throw new IllegalArgumentException("Skeleton needs " + SKELETON_FLOAT_COUNT + " values");
+        }
+        this.skeleton = skeleton;
+    }
+
+    /**
+     * The primitive features, this is what matching works on.
+     */
+    public FeatureVector getFeatures() {
+        return features;
+    }
 
+    /**
+     * Compatibility view of {@link #getFeatures()}, every call to get creates a new Angle.
+     * Added angles go to the next free slot of their type.
+     */
     public List<Angle> getAngles() {
         return angles;
     }
 
+    private class AngleView extends AbstractList<Angle> {
+
+        @Override
+        public Angle get(int index) {
+            int slot = -1;
+            for (int remaining = index; remaining >= 0; remaining--) {
+                do {
+                    slot++;
+                    if (slot >= FeatureVector.LENGTH) {
+                        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+                    }
+                } while (!features.isPresent(slot));
+            }
+            Angle angle = new Angle();
+            angle.setAngleType(FeatureVector.typeOf(slot));
+            angle.setValue(features.get(slot));
+            return angle;
+        }
 
+        @Override
+        public boolean add(Angle angle) {
+            features.add(angle.getAngleType(), angle.getValue());
+            modCount++;
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return features.size();
+        }
+    }
 }
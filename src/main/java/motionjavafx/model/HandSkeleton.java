@@ -0,0 +1,195 @@
+package motionjavafx.model;
+
+import com.leapmotion.leap.Bone;
+import com.leapmotion.leap.Finger;
+import com.leapmotion.leap.Hand;
+import com.leapmotion.leap.Vector;
+
+/**
+ * Plain copy of the joint positions of one tracked hand.
+ * All points live in one flat float array (x, y, z per point) so a hand can be
+ * written to a log, replayed and processed without the Leap runtime.
+ *
+ * Point layout: 5 fingers in {@link Finger.Type} order with 5 joints each
+ * (the joint every bone starts at in {@link Bone.Type} order followed by the tip, so joint j and j + 1
+ * are the ends of bone j), then palm position, wrist position, palm normal and hand direction.
+ * Only {@link #set(Hand)} touches the Leap runtime.
+ */
+public class HandSkeleton {
+    public static final int FINGER_COUNT = 5;
+    public static final int JOINTS_PER_FINGER = 5;
+    public static final int METACARPAL = 0;
+    public static final int PROXIMAL = 1;
+    public static final int INTERMEDIATE = 2;
+    public static final int DISTAL = 3;
+    public static final int TIP = 4;
+    public static final int PALM = FINGER_COUNT * JOINTS_PER_FINGER;
+    public static final int WRIST = PALM + 1;
+    public static final int PALM_NORMAL = PALM + 2;
+    public static final int DIRECTION = PALM + 3;
+    public static final int POINT_COUNT = PALM + 4;
+    public static final int FLOAT_COUNT = POINT_COUNT * 3;
+    public static final int ALL_FINGERS = (1 << FINGER_COUNT) - 1;
+
+    private static final float EPSILON = 1.192092896e-07f;
+
+    private final float[] points = new float[FLOAT_COUNT];
+    private int id;
+    private boolean rightHand;
+    private float confidence;
+    private int fingerMask = ALL_FINGERS;
+
+    public HandSkeleton() {
+    }
+
+    public static int jointIndex(int finger, int joint) {
+        return finger * JOINTS_PER_FINGER + joint;
+    }
+
+    /**
+     * Index of the joint the bone starts at.
+     */
+    public static int boneIndex(int finger, Bone.Type boneType) {
+        return jointIndex(finger, boneType.ordinal());
+    }
+
+    public static int tipIndex(int finger) {
+        return jointIndex(finger, TIP);
+    }
+
+    /**
+     * Copies all joints of a Leap hand, overwriting the previous content.
+     */
+    public void set(Hand hand) {
+        id = hand.id();
+        rightHand = hand.isRight();
+        confidence = hand.confidence();
+        fingerMask = 0;
+        for (Finger finger : hand.fingers()) {
+            final int f = finger.type().ordinal();
+            if (finger.isValid()) {
+                fingerMask |= 1 << f;
+            }
+            setPoint(jointIndex(f, METACARPAL), finger.bone(Bone.Type.TYPE_METACARPAL).prevJoint());
+            for (Bone.Type boneType : Bone.Type.values()) {
+                setPoint(boneIndex(f, boneType) + 1, finger.bone(boneType).nextJoint());
+            }
+        }
+        setPoint(PALM, hand.palmPosition());
+        setPoint(WRIST, hand.arm().wristPosition());
+        setPoint(PALM_NORMAL, hand.palmNormal());
+        setPoint(DIRECTION, hand.direction());
+    }
+
+    /**
+     * Turns finger points stored as bone centres, the layout before joints were stored, into joints in place.
+     * The bones are straight, so every joint follows exactly from the tip and the centres below it.
+     *
+     * @param points at least the finger points of a hand laid out like {@link #getPoints()}
+     */
+    public static void centresToJoints(float[] points) {
+        for (int f = 0; f < FINGER_COUNT; f++) {
+            for (int joint = DISTAL; joint >= METACARPAL; joint--) {
+                final int p = jointIndex(f, joint) * 3;
+                for (int axis = 0; axis < 3; axis++) {
+                    points[p + axis] = 2 * points[p + axis] - points[p + 3 + axis];
+                }
+            }
+        }
+    }
+
+    public void copyFrom(HandSkeleton other) {
+        System.arraycopy(other.points, 0, points, 0, FLOAT_COUNT);
+        id = other.id;
+        rightHand = other.rightHand;
+        confidence = other.confidence;
+        fingerMask = other.fingerMask;
+    }
+
+    private void setPoint(int point, Vector vector) {
+        setPoint(point, vector.getX(), vector.getY(), vector.getZ());
+    }
+
+    public void setPoint(int point, float x, float y, float z) {
+        final int offset = point * 3;
+        points[offset] = x;
+        points[offset + 1] = y;
+        points[offset + 2] = z;
+    }
+
+    public float getX(int point) {
+        return points[point * 3];
+    }
+
+    public float getY(int point) {
+        return points[point * 3 + 1];
+    }
+
+    public float getZ(int point) {
+        return points[point * 3 + 2];
+    }
+
+    /**
+     * Angle between two points seen as vectors from the device origin,
+     * same result as {@link Vector#angleTo(Vector)}.
+     */
+    public float angleBetween(int pointA, int pointB) {
+        final int a = pointA * 3;
+        final int b = pointB * 3;
+        final float ax = points[a], ay = points[a + 1], az = points[a + 2];
+        final float bx = points[b], by = points[b + 1], bz = points[b + 2];
+        final float denom = (ax * ax + ay * ay + az * az) * (bx * bx + by * by + bz * bz);
+        if (denom <= EPSILON) {
+            return 0.0f;
+        }
+        final float val = (ax * bx + ay * by + az * bz) / (float) Math.sqrt(denom);
+        if (val >= 1.0f) {
+            return 0.0f;
+        } else if (val <= -1.0f) {
+            return (float) Math.PI;
+        }
+        return (float) Math.acos(val);
+    }
+
+    /**
+     * Direct access to the flat point array, see the class comment for the layout.
+     */
+    public float[] getPoints() {
+        return points;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public boolean isRightHand() {
+        return rightHand;
+    }
+
+    public void setRightHand(boolean rightHand) {
+        this.rightHand = rightHand;
+    }
+
+    public float getConfidence() {
+        return confidence;
+    }
+
+    public void setConfidence(float confidence) {
+        this.confidence = confidence;
+    }
+
+    /**
+     * Bit i is set when the finger with {@link Finger.Type} ordinal i was tracked.
+     */
+    public int getFingerMask() {
+        return fingerMask;
+    }
+
+    public void setFingerMask(int fingerMask) {
+        this.fingerMask = fingerMask;
+    }
+}
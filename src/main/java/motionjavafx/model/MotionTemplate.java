@@ -0,0 +1,134 @@
+package motionjavafx.model;
+
+import java.util.Arrays;
+
+/**
+ * A recorded moving gesture of one hand: a time series of feature vectors,
+ * packed frame after frame with stride {@link FeatureVector#LENGTH}, with the mask of present slots per frame.
+ */
+public class MotionTemplate {
+    private int id;
+    private String name;
+    private boolean rightHand;
+    private float[] frames = new float[0];
+    private int[] masks = new int[0];
+    private int length;
+
+    public MotionTemplate() {
+    }
+
+    /**
+     * A template with every slot of every frame present.
+     */
+    public MotionTemplate(String name, boolean rightHand, float[] frames) {
+        this(name, rightHand, frames, fullMasks(frames.length / FeatureVector.LENGTH));
+    }
+
+    public MotionTemplate(String name, boolean rightHand, float[] frames, int[] masks) {
+        this.name = name;
+        this.rightHand = rightHand;
+        setFrames(frames, masks);
+    }
+
+    private static int[] fullMasks(int length) {
+        final int[] masks = new int[length];
+        Arrays.fill(masks, FeatureVector.FULL_MASK);
+        return masks;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public boolean isRightHand() {
+        return rightHand;
+    }
+
+    public void setRightHand(boolean rightHand) {
+        this.rightHand = rightHand;
+    }
+
+    /**
+     * Number of recorded frames.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public float[] getFrames() {
+        return frames;
+    }
+
+    /**
+     * Present slots of every frame, see {@link FeatureVector#getMask()}.
+     */
+    public int[] getMasks() {
+        return masks;
+    }
+
+    public void setFrames(float[] frames, int[] masks) {
+        if (frames.length % FeatureVector.LENGTH != 0) {
+            throw new IllegalArgumentException("Frame data is not a multiple of " + FeatureVector.LENGTH);
+        }
+        if (masks.length != frames.length / FeatureVector.LENGTH) {
+            throw new IllegalArgumentException("Expected " + frames.length / FeatureVector.LENGTH
+                    + " frame masks, got " + masks.length);
+        }
+        this.frames = frames;
+        this.masks = masks;
+        this.length = masks.length;
+    }
+
+    public float get(int frame, int slot) {
+        return frames[frame * FeatureVector.LENGTH + slot];
+    }
+
+    public boolean isPresent(int frame, int slot) {
+        return (masks[frame] & (1 << slot)) != 0;
+    }
+
+    /**
+     * Collects feature vectors while a motion is being recorded.
+     */
+    public static class Builder {
+        private float[] frames = new float[64 * FeatureVector.LENGTH];
+        private int[] masks = new int[64];
+        private int length = 0;
+
+        public void add(FeatureVector features) {
+            if (length == masks.length) {
+                frames = Arrays.copyOf(frames, frames.length * 2);
+                masks = Arrays.copyOf(masks, masks.length * 2);
+            }
+            System.arraycopy(features.getValues(), 0, frames, length * FeatureVector.LENGTH, FeatureVector.LENGTH);
+            masks[length] = features.getMask();
+            length++;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public MotionTemplate build(String name, boolean rightHand) {
+            return new MotionTemplate(name, rightHand, Arrays.copyOf(frames, length * FeatureVector.LENGTH),
+                    Arrays.copyOf(masks, length));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + length + " frames)";
+    }
+}
@@ -0,0 +1,95 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.FeatureVector;
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Learns how much every feature slot counts when hands are compared, from the spread between
+ * samples of the same gesture: several stored hands of one handedness in one gesture are recordings of
+ * the same sign, so their differences are noise. Slots with a large pooled within-gesture variance count
+ * less, which turns the squared distance into a diagonal Mahalanobis distance.
+ *
+ * The result is a scale per slot, the square root of the weight, so that a vector can be whitened once and
+ * compared with a plain squared distance. Weights are normalised to an average of 1 to keep scores on the
+ * scale of the unweighted distance, and a library without repeated samples gets all scales 1.
+ */
+public final class FeatureWeighting {
+    // slots with fewer degrees of freedom than this get the average variance
+    static final int MIN_DEGREES_OF_FREEDOM = 3;
+    // no slot variance is taken below the pooled variance divided by this
+    static final double MAX_WEIGHT_RATIO = 10;
+
+    private FeatureWeighting() {
+    }
+
+    public static float[] unitScales() {
+        final float[] scales = new float[FeatureVector.LENGTH];
+        Arrays.fill(scales, 1f);
+        return scales;
+    }
+
+    public static float[] learnScales(Collection<Gesture> gestures) {
+        final double[] squares = new double[FeatureVector.LENGTH];
+        final int[] degrees = new int[FeatureVector.LENGTH];
+        for (Gesture gesture : gestures) {
+            addSpread(gesture, true, squares, degrees);
+            addSpread(gesture, false, squares, degrees);
+        }
+        final double[] variances = new double[FeatureVector.LENGTH];
+        double pooled = 0;
+        int pooledDegrees = 0;
+        for (int i = 0; i < FeatureVector.LENGTH; i++) {
+            pooled += squares[i];
+            pooledDegrees += degrees[i];
+        }
+        if (pooledDegrees == 0 || pooled == 0) {
+            return unitScales();
+        }
+        pooled /= pooledDegrees;
+        for (int i = 0; i < FeatureVector.LENGTH; i++) {
+            final double variance = degrees[i] < MIN_DEGREES_OF_FREEDOM ? pooled : squares[i] / degrees[i];
+            variances[i] = Math.max(variance, pooled / MAX_WEIGHT_RATIO);
+        }
+        double weightSum = 0;
+        for (int i = 0; i < FeatureVector.LENGTH; i++) {
+            weightSum += 1 / variances[i];
+        }
+        final float[] scales = new float[FeatureVector.LENGTH];
+        for (int i = 0; i < FeatureVector.LENGTH; i++) {
+            scales[i] = (float) Math.sqrt(FeatureVector.LENGTH / (variances[i] * weightSum));
+        }
+        return scales;
+    }
+
+    /**
+     * Adds the squared deviations from the mean of every slot over the hands of one handedness,
+     * and their degrees of freedom (samples minus one).
+     */
+    private static void addSpread(Gesture gesture, boolean rightHand, double[] squares, int[] degrees) {
+        for (int i = 0; i < FeatureVector.LENGTH; i++) {
+            int count = 0;
+            double sum = 0;
+            for (HandGesture hand : gesture.getHandGestures()) {
+                if (hand.isRightHand() == rightHand && hand.getFeatures().isPresent(i)) {
+                    sum += hand.getFeatures().get(i);
+                    count++;
+                }
+            }
+            if (count < 2) {
+                continue;
+            }
+            final double mean = sum / count;
+            for (HandGesture hand : gesture.getHandGestures()) {
+                if (hand.isRightHand() == rightHand && hand.getFeatures().isPresent(i)) {
+                    final double deviation = hand.getFeatures().get(i) - mean;
+                    squares[i] += deviation * deviation;
+                }
+            }
+            degrees[i] += count - 1;
+        }
+    }
+}
@@ -0,0 +1,745 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.FeatureVector;
+import motionjavafx.model.Gesture;
+import motionjavafx.model.GestureDAO;
+import motionjavafx.model.HandGesture;
+import motionjavafx.util.DBUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, precomputed form of a gesture library for matching.
+ * The feature vectors of all stored hands are packed into one flat float buffer per handedness
+ * (stride {@link FeatureVector#LENGTH}), so a query is a branch-light sequential scan.
+ *
+ * Hands are compared with the diagonal Mahalanobis distance learned by {@link FeatureWeighting}.
+ * The stored vectors are whitened with the learned scales when the index is built and the query once
+ * per search, so the scan itself stays a plain squared distance.
+ *
+ * {@link Searcher#best(Gesture)} carries the best total so far and abandons a stored hand as soon as its
+ * partial distance exceeds it. Slots are visited in order of their spread over the bucket, the most
+ * discriminative first, and the first few are packed per hand, so most hands are rejected without
+ * reading their full vector. Small buckets fit in the cache and are scanned fully, there the extra
+ * branches cost more than they save.
+ *
+ * An index can be compiled into a file with {@link #write(Path)} and opened again with {@link #map(Path)},
+ * which maps the file read-only and matches straight against the mapped pages. Gestures of a mapped
+ * index only carry id and name.
+ *
+ * Only slots present in both the live and the stored hand count, scaled to all slots like
+ * {@link FeatureVector#squaredDistance(FeatureVector)}, a stored hand without any such slot is not compared
+ * at all. Live and stored hands are assigned and unassigned hands penalised like in {@link LinearGestureMatcher}.
+ * Which gestures share a hand side with the live gesture is precomputed for every combination of sides,
+ * the others are skipped before any distance is computed.
+ * Scores are exactly those of {@link LinearGestureMatcher#calcConfidentiality(Gesture, Gesture, float[])}
+ * with {@link #getScales()}.
+ * A query needs scratch space, use one {@link Searcher} per thread.
+ */
+public class GestureIndex {
+    private static final int STRIDE = FeatureVector.LENGTH;
+    // "MJGI" little-endian
+    static final int MAGIC = 0x49474A4D;
+    // version 5 holds palm frame features measured at the finger joints and the hand sides of every gesture,
+    // older files have to be compiled again
+    static final int VERSION = 5;
+    private static final int HEADER_BYTES = 6 * 4;
+    private static final int SCALES_BYTES = STRIDE * 4;
+    // id, name offset, name length and sides of every gesture
+    private static final int TABLE_INTS = 4;
+    // relative margin for abandoning a hand, covers the rounding of summing in another slot order
+    private static final double PRUNE_SLACK = 1e-9;
+    /**
+     * Buckets with fewer hands are scanned without pruning, from -Dmotionjavafx.prune.minHands.
+     */
+    public static final int DEFAULT_PRUNE_MIN_HANDS = Integer.getInteger("motionjavafx.prune.minHands", 8192);
+
+    private final List<Gesture> gestures;
+    private final float[] scales;
+    private final Bucket leftHands;
+    private final Bucket rightHands;
+    // hand sides of every gesture, see LinearGestureMatcher.sides
+    private final int[] sides;
+    // for every combination of live hand sides the gestures sharing at least one side, in library order
+    private final int[][] candidates = new int[4][];
+
+    private GestureIndex(List<Gesture> gestures, float[] scales, Bucket leftHands, Bucket rightHands, int[] sides) {
+        this.gestures = gestures;
+        this.scales = scales;
+        this.leftHands = leftHands;
+        this.rightHands = rightHands;
+        this.sides = sides;
+        for (int liveSides = 0; liveSides < candidates.length; liveSides++) {
+            int count = 0;
+            for (int side : sides) {
+                if ((side & liveSides) != 0) {
+                    count++;
+                }
+            }
+            candidates[liveSides] = new int[count];
+            count = 0;
+            for (int g = 0; g < sides.length; g++) {
+                if ((sides[g] & liveSides) != 0) {
+                    candidates[liveSides][count++] = g;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the index with the weighting learned from the library itself.
+     */
+    public static GestureIndex build(Collection<Gesture> gestures) {
+        return build(gestures, FeatureWeighting.learnScales(gestures));
+    }
+
+    /**
+     * Builds the index from at most prototypes samples per gesture name, see {@link PrototypeCompressor}.
+     * The weighting is learned from all samples before they are compressed.
+     */
+    public static GestureIndex buildCompressed(Collection<Gesture> gestures, int prototypes) {
+        final float[] scales = FeatureWeighting.learnScales(gestures);
+        return build(PrototypeCompressor.compress(gestures, prototypes, scales), scales);
+    }
+
+    /**
+     * Like {@link #buildCompressed(Collection, int)}, recompressing only the gesture names that changed since the
+     * last build with the same cache.
+     */
+    public static GestureIndex buildCompressed(Collection<Gesture> gestures, PrototypeCompressor.Cache cache) {
+        final float[] scales = FeatureWeighting.learnScales(gestures);
+        return build(cache.compress(gestures, scales), scales);
+    }
+
+    /**
+     * @param scales per slot scales, {@link FeatureWeighting#unitScales()} for the unweighted distance
+     */
+    public static GestureIndex build(Collection<Gesture> gestures, float[] scales) {
+        final List<Gesture> list = Collections.unmodifiableList(new ArrayList<>(gestures));
+        final float[] copy = Arrays.copyOf(scales, STRIDE);
+        final int[] sides = new int[list.size()];
+        for (int g = 0; g < sides.length; g++) {
+            sides[g] = LinearGestureMatcher.sides(list.get(g).getHandGestures());
+        }
+        return new GestureIndex(list, copy, Bucket.build(list, false, copy), Bucket.build(list, true, copy), sides);
+    }
+
+    /**
+     * Opens a file written by {@link #write(Path)}. Only the header and the gesture table are read,
+     * the hands are not copied to the heap. A file whose counts do not fit its size or whose table points
+     * outside it throws an IOException.
+     */
+    public static GestureIndex map(Path file) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a compiled gesture library: " + file);
+        }
+        final int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported gesture library version " + version + ", compile it again: " + file);
+        }
+        final int gestureCount = buffer.getInt(8);
+        final int leftCount = buffer.getInt(12);
+        final int rightCount = buffer.getInt(16);
+        final int namesLength = buffer.getInt(20);
+        if (gestureCount < 0 || leftCount < 0 || rightCount < 0 || namesLength < 0
+                || HEADER_BYTES + SCALES_BYTES + (long) gestureCount * TABLE_INTS * 4
+                + ((long) leftCount + rightCount) * Bucket.BYTES_PER_HAND + namesLength != buffer.limit()) {
+            throw new IOException("Truncated gesture library: " + file);
+        }
+        int position = HEADER_BYTES;
+        final float[] scales = new float[STRIDE];
+        slice(buffer, position, SCALES_BYTES).asFloatBuffer().get(scales);
+        position += SCALES_BYTES;
+        final IntBuffer table = slice(buffer, position, gestureCount * TABLE_INTS * 4).asIntBuffer();
+        position += gestureCount * TABLE_INTS * 4;
+        final int[] sides = new int[gestureCount];
+        for (int g = 0; g < gestureCount; g++) {
+            final int nameOffset = table.get(g * TABLE_INTS + 1);
+            final int nameLength = table.get(g * TABLE_INTS + 2);
+            sides[g] = table.get(g * TABLE_INTS + 3);
+            if (nameOffset < 0 || nameLength < 0 || (long) nameOffset + nameLength > namesLength
+                    || sides[g] < 0 || sides[g] > (LinearGestureMatcher.LEFT_SIDE | LinearGestureMatcher.RIGHT_SIDE)) {
+                throw new IOException("Corrupt gesture table entry " + g + ": " + file);
+            }
+        }
+        final Bucket leftHands = Bucket.slice(buffer, position, leftCount);
+        position += leftCount * Bucket.BYTES_PER_HAND;
+        final Bucket rightHands = Bucket.slice(buffer, position, rightCount);
+        position += rightCount * Bucket.BYTES_PER_HAND;
+        if (!leftHands.ownersBelow(gestureCount) || !rightHands.ownersBelow(gestureCount)) {
+            throw new IOException("Corrupt hand owner in gesture library: " + file);
+        }
+        final ByteBuffer names = slice(buffer, position, namesLength);
+        return new GestureIndex(new MappedGestures(table, names, gestureCount), scales, leftHands, rightHands, sides);
+    }
+
+    /**
+     * Compiles this index into a file for {@link #map(Path)}.
+     */
+    public void write(Path file) throws IOException {
+        final byte[][] names = new byte[gestures.size()][];
+        int namesLength = 0;
+        for (int g = 0; g < names.length; g++) {
+            final String name = gestures.get(g).getName();
+            names[g] = (name == null ? "" : name).getBytes(StandardCharsets.UTF_8);
+            namesLength += names[g].length;
+        }
+        final int size = HEADER_BYTES + SCALES_BYTES + gestures.size() * TABLE_INTS * 4
+                + (leftHands.size + rightHands.size) * Bucket.BYTES_PER_HAND + namesLength;
+        final ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(gestures.size())
+                .putInt(leftHands.size).putInt(rightHands.size).putInt(namesLength);
+        for (float scale : scales) {
+            buffer.putFloat(scale);
+        }
+        int nameOffset = 0;
+        for (int g = 0; g < names.length; g++) {
+            buffer.putInt(gestures.get(g).getId()).putInt(nameOffset).putInt(names[g].length).putInt(sides[g]);
+            nameOffset += names[g].length;
+        }
+        leftHands.writeTo(buffer);
+        rightHands.writeTo(buffer);
+        for (byte[] name : names) {
+            buffer.put(name);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        final ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position).limit(position + length);
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int size() {
+        return gestures.size();
+    }
+
+    public List<Gesture> getGestures() {
+        return gestures;
+    }
+
+    /**
+     * The per slot scales the hands are compared with.
+     */
+    public float[] getScales() {
+        return scales.clone();
+    }
+
+    public Searcher newSearcher() {
+        return new Searcher(DEFAULT_PRUNE_MIN_HANDS);
+    }
+
+    /**
+     * @param pruneMinHands buckets with fewer hands are scanned without pruning, 0 to always prune
+     */
+    public Searcher newSearcher(int pruneMinHands) {
+        return new Searcher(pruneMinHands);
+    }
+
+    /**
+     * Compiles the gesture library of the database into a file, compressed to
+     * {@link PrototypeCompressor#DEFAULT_PROTOTYPES} prototype samples per gesture.
+     * Usage: GestureIndex output [jdbc url]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: GestureIndex output [jdbc url]");
+            return;
+        }
+        if (args.length > 1) {
+            DBUtil.connStr = args[1];
+        }
+        try {
+            final GestureIndex index = buildCompressed(GestureDAO.getAllGestures(), PrototypeCompressor.DEFAULT_PROTOTYPES);
+            index.write(Paths.get(args[0]));
+            System.out.println(index.size() + " gestures written to " + args[0]);
+        } finally {
+            DBUtil.shutdown();
+        }
+    }
+
+    /**
+     * All stored hands of one handedness, ordered by gesture, whitened with the scales of the index.
+     */
+    private static final class Bucket {
+        static final int BYTES_PER_HAND = STRIDE * 4 + 4 + 4;
+
+        private final FloatBuffer values;
+        private final IntBuffer masks;
+        private final IntBuffer owners;
+        private final int size;
+        private volatile Pruning pruning;
+
+        private Bucket(FloatBuffer values, IntBuffer masks, IntBuffer owners, int size) {
+            this.values = values;
+            this.masks = masks;
+            this.owners = owners;
+            this.size = size;
+        }
+
+        static Bucket build(List<Gesture> gestures, boolean rightHand, float[] scales) {
+            int count = 0;
+            for (Gesture gesture : gestures) {
+                for (HandGesture handGesture : gesture.getHandGestures()) {
+                    if (handGesture.isRightHand() == rightHand) {
+                        count++;
+                    }
+                }
+            }
+            final float[] values = new float[count * STRIDE];
+            final int[] masks = new int[count];
+            final int[] owners = new int[count];
+            int hand = 0;
+            for (int g = 0; g < gestures.size(); g++) {
+                for (HandGesture handGesture : gestures.get(g).getHandGestures()) {
+                    if (handGesture.isRightHand() != rightHand) {
+                        continue;
+                    }
+                    final FeatureVector features = handGesture.getFeatures();
+                    for (int i = 0; i < STRIDE; i++) {
+                        // absent slots are stored as 0 and skipped through the mask
+                        values[hand * STRIDE + i] = features.isPresent(i) ? features.get(i) * scales[i] : 0f;
+                    }
+                    masks[hand] = features.getMask();
+                    owners[hand] = g;
+                    hand++;
+                }
+            }
+            return new Bucket(FloatBuffer.wrap(values), IntBuffer.wrap(masks), IntBuffer.wrap(owners), count);
+        }
+
+        /**
+         * Slot order and slot prefix for pruned searches, built on first use.
+         */
+        Pruning pruning() {
+            Pruning result = pruning;
+            if (result == null) {
+                result = new Pruning(this);
+                pruning = result;
+            }
+            return result;
+        }
+
+        static Bucket slice(ByteBuffer buffer, int position, int count) {
+            final FloatBuffer values = GestureIndex.slice(buffer, position, count * STRIDE * 4).asFloatBuffer();
+            position += count * STRIDE * 4;
+            final IntBuffer masks = GestureIndex.slice(buffer, position, count * 4).asIntBuffer();
+            position += count * 4;
+            final IntBuffer owners = GestureIndex.slice(buffer, position, count * 4).asIntBuffer();
+            return new Bucket(values, masks, owners, count);
+        }
+
+        boolean ownersBelow(int gestureCount) {
+            for (int i = 0; i < size; i++) {
+                if (owners.get(i) < 0 || owners.get(i) >= gestureCount) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            for (int i = 0; i < size * STRIDE; i++) {
+                buffer.putFloat(values.get(i));
+            }
+            for (int i = 0; i < size; i++) {
+                buffer.putInt(masks.get(i));
+            }
+            for (int i = 0; i < size; i++) {
+                buffer.putInt(owners.get(i));
+            }
+        }
+    }
+
+    /**
+     * Slots of a bucket by decreasing variance of their stored values, the most discriminative first,
+     * and the first {@link #HEAD} of them for every hand packed into a small array. A pruned search reads
+     * the full vector of a hand only if the head alone does not rule it out, which saves memory
+     * bandwidth since a full vector fills a cache line.
+     */
+    private static final class Pruning {
+        static final int HEAD = 4;
+
+        final int[] order = new int[STRIDE];
+        final int headMask;
+        final float[] head;
+
+        Pruning(Bucket bucket) {
+            final double[] sums = new double[STRIDE];
+            final double[] squares = new double[STRIDE];
+            final int[] counts = new int[STRIDE];
+            for (int hand = 0; hand < bucket.size; hand++) {
+                final int mask = bucket.masks.get(hand);
+                for (int i = 0; i < STRIDE; i++) {
+                    if ((mask & (1 << i)) != 0) {
+                        final double value = bucket.values.get(hand * STRIDE + i);
+                        sums[i] += value;
+                        squares[i] += value * value;
+                        counts[i]++;
+                    }
+                }
+            }
+            final Integer[] slots = new Integer[STRIDE];
+            final double[] variances = new double[STRIDE];
+            for (int i = 0; i < STRIDE; i++) {
+                slots[i] = i;
+                final double mean = counts[i] == 0 ? 0 : sums[i] / counts[i];
+                variances[i] = counts[i] == 0 ? 0 : squares[i] / counts[i] - mean * mean;
+            }
+            Arrays.sort(slots, (a, b) -> Double.compare(variances[b], variances[a]));
+            int mask = 0;
+            for (int k = 0; k < STRIDE; k++) {
+                order[k] = slots[k];
+                if (k < HEAD) {
+                    mask |= 1 << order[k];
+                }
+            }
+            headMask = mask;
+            head = new float[bucket.size * HEAD];
+            for (int hand = 0; hand < bucket.size; hand++) {
+                for (int k = 0; k < HEAD; k++) {
+                    head[hand * HEAD + k] = bucket.values.get(hand * STRIDE + order[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gestures of a mapped index, created on first access from the id and name table.
+     */
+    private static final class MappedGestures extends AbstractList<Gesture> {
+        private final IntBuffer table;
+        private final ByteBuffer names;
+        private final Gesture[] cache;
+
+        MappedGestures(IntBuffer table, ByteBuffer names, int size) {
+            this.table = table;
+            this.names = names;
+            this.cache = new Gesture[size];
+        }
+
+        @Override
+        public Gesture get(int index) {
+            Gesture gesture = cache[index];
+            if (gesture == null) {
+                final byte[] name = new byte[table.get(index * TABLE_INTS + 2)];
+                final ByteBuffer duplicate = names.duplicate();
+                duplicate.position(table.get(index * TABLE_INTS + 1));
+                duplicate.get(name);
+                gesture = new Gesture(table.get(index * TABLE_INTS), new String(name, StandardCharsets.UTF_8),
+                        new ArrayList<>());
+                // racing threads may create equal instances, which is harmless
+                cache[index] = gesture;
+            }
+            return gesture;
+        }
+
+        @Override
+        public int size() {
+            return cache.length;
+        }
+    }
+
+    /**
+     * Reusable scratch space for queries against this index. Not thread safe.
+     */
+    public class Searcher {
+        private final double[] totals = new double[gestures.size()];
+        private final double[] handMin = new double[gestures.size()];
+        private final float[] query = new float[STRIDE];
+        // the live hand sides in the order their first hand appears, and the live hands
+        private final int[] liveSideOrder = new int[2];
+        private int liveSideCount;
+        private List<HandGesture> liveHands;
+        private final int pruneMinHands;
+
+        private Searcher(int pruneMinHands) {
+            this.pruneMinHands = pruneMinHands;
+        }
+
+        public GestureIndex getIndex() {
+            return GestureIndex.this;
+        }
+
+        /**
+         * Best library gesture for the live gesture, or null if no gesture shares a hand side with it.
+         */
+        public GestureMatch best(Gesture gesture) {
+            final int[] candidates = start(gesture);
+            if (candidates.length == 0) {
+                return null;
+            }
+            for (int h = 0; h < liveSideCount; h++) {
+                // the bound is only known once every other side is scored
+                final int side = liveSideOrder[h];
+                if (h < liveSideCount - 1 || bucket(side).size < pruneMinHands) {
+                    addSide(side, candidates);
+                } else {
+                    addSideBounded(side, candidates);
+                }
+            }
+            int best = candidates[0];
+            for (int c = 1; c < candidates.length; c++) {
+                final int g = candidates[c];
+                if (100 - totals[g] > 100 - totals[best]) {
+                    best = g;
+                }
+            }
+            return new GestureMatch(gestures.get(best), 100 - totals[best]);
+        }
+
+        /**
+         * The k best compatible library gestures, best first.
+         */
+        public List<GestureMatch> nearest(Gesture gesture, int k) {
+            final int[] candidates = start(gesture);
+            final int count = Math.min(k, candidates.length);
+            if (count <= 0) {
+                return Collections.emptyList();
+            }
+            for (int h = 0; h < liveSideCount; h++) {
+                addSide(liveSideOrder[h], candidates);
+            }
+            final int[] top = new int[count];
+            int filled = 0;
+            for (int g : candidates) {
+                final double confidentiality = 100 - totals[g];
+                if (filled == count && confidentiality <= 100 - totals[top[count - 1]]) {
+                    continue;
+                }
+                int position = filled < count ? filled++ : count - 1;
+                while (position > 0 && confidentiality > 100 - totals[top[position - 1]]) {
+                    top[position] = top[position - 1];
+                    position--;
+                }
+                top[position] = g;
+            }
+            final List<GestureMatch> matches = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                matches.add(new GestureMatch(gestures.get(top[i]), 100 - totals[top[i]]));
+            }
+            return matches;
+        }
+
+        /**
+         * Collects the live hand sides and sets the total of every candidate to its hand count penalty.
+         * Returns the candidates, the gestures sharing at least one side with the live gesture.
+         */
+        private int[] start(Gesture gesture) {
+            final List<HandGesture> hands = gesture.getHandGestures();
+            liveHands = hands;
+            liveSideCount = 0;
+            int liveSides = 0;
+            for (int i = 0; i < hands.size(); i++) {
+                final int side = LinearGestureMatcher.side(hands.get(i));
+                if ((liveSides & side) == 0) {
+                    liveSideOrder[liveSideCount++] = side;
+                    liveSides |= side;
+                }
+            }
+            final int[] result = candidates[liveSides];
+            for (int g : result) {
+                totals[g] = LinearGestureMatcher.HAND_COUNT_PENALTY
+                        * LinearGestureMatcher.unassignedHands(hands, liveSides, sides[g]);
+            }
+            return result;
+        }
+
+        private Bucket bucket(int side) {
+            return side == LinearGestureMatcher.RIGHT_SIDE ? rightHands : leftHands;
+        }
+
+        /**
+         * Adds the lowest failure of a live and a stored hand of the side to the total of every candidate
+         * with a hand of that side.
+         */
+        private void addSide(int side, int[] candidates) {
+            Arrays.fill(handMin, Double.MAX_VALUE);
+            for (int i = 0; i < liveHands.size(); i++) {
+                final HandGesture handGesture = liveHands.get(i);
+                if (LinearGestureMatcher.side(handGesture) == side) {
+                    scanHand(handGesture);
+                }
+            }
+            addMinima(side, candidates);
+        }
+
+        /**
+         * Lowers the minimum of every gesture to the failure of its closest stored hand of the live hand's side.
+         */
+        private void scanHand(HandGesture handGesture) {
+            final Bucket bucket = bucket(LinearGestureMatcher.side(handGesture));
+            final int queryMask = prepareQuery(handGesture.getFeatures());
+            final FloatBuffer values = bucket.values;
+            for (int hand = 0; hand < bucket.size; hand++) {
+                final int common = queryMask & bucket.masks.get(hand);
+                if (common == 0) {
+                    continue;
+                }
+                final double failure = common == FeatureVector.FULL_MASK
+                        ? fullDistance(values, hand * STRIDE)
+                        : maskedDistance(values, hand * STRIDE, common);
+                final int owner = bucket.owners.get(hand);
+                if (failure < handMin[owner]) {
+                    handMin[owner] = failure;
+                }
+            }
+        }
+
+        private void addMinima(int side, int[] candidates) {
+            for (int g : candidates) {
+                if ((sides[g] & side) != 0) {
+                    totals[g] += handMin[g];
+                }
+            }
+        }
+
+        /**
+         * Like {@link #addSide(int, int[])}, but skips every stored hand that can neither lower the minimum
+         * of its gesture nor beat the best total so far. Only the best gesture is guaranteed to get its exact total,
+         * the others may end up higher. A hand that survives is summed again in slot order, so the winning
+         * total is bit for bit the one of the full scan.
+         */
+        private void addSideBounded(int side, int[] candidates) {
+            Arrays.fill(handMin, Double.MAX_VALUE);
+            // candidates without this side are already final
+            double bestTotal = Double.MAX_VALUE;
+            for (int g : candidates) {
+                if ((sides[g] & side) == 0) {
+                    bestTotal = Math.min(bestTotal, totals[g]);
+                }
+            }
+            for (int i = 0; i < liveHands.size(); i++) {
+                final HandGesture handGesture = liveHands.get(i);
+                if (LinearGestureMatcher.side(handGesture) == side) {
+                    bestTotal = scanHandBounded(handGesture, bestTotal);
+                }
+            }
+            addMinima(side, candidates);
+        }
+
+        /**
+         * The pruned scan of one live hand, returns the best total so far.
+         */
+        private double scanHandBounded(HandGesture handGesture, double bestTotal) {
+            final Bucket bucket = bucket(LinearGestureMatcher.side(handGesture));
+            final int queryMask = prepareQuery(handGesture.getFeatures());
+            final Pruning pruning = bucket.pruning();
+            final int[] order = pruning.order;
+            final float[] head = pruning.head;
+            final float query0 = query[order[0]];
+            final float query1 = query[order[1]];
+            final float query2 = query[order[2]];
+            final float query3 = query[order[3]];
+            final FloatBuffer values = bucket.values;
+            for (int hand = 0; hand < bucket.size; hand++) {
+                final int common = queryMask & bucket.masks.get(hand);
+                if (common == 0) {
+                    continue;
+                }
+                final int owner = bucket.owners.get(hand);
+                // a gesture without a comparable hand on its other side keeps its exact total,
+                // that is what the full scan ranks by
+                final double bound = totals[owner] >= Double.MAX_VALUE
+                        ? handMin[owner]
+                        : Math.min(handMin[owner], bestTotal - totals[owner]);
+                // the sums below are compared before they are normalized
+                final double limit = (bound + bound * PRUNE_SLACK) / FeatureVector.normalize(1, common);
+                if ((common & pruning.headMask) == pruning.headMask) {
+                    final float d0 = query0 - head[hand * Pruning.HEAD];
+                    final float d1 = query1 - head[hand * Pruning.HEAD + 1];
+                    final float d2 = query2 - head[hand * Pruning.HEAD + 2];
+                    final float d3 = query3 - head[hand * Pruning.HEAD + 3];
+                    if ((double) d0 * d0 + (double) d1 * d1 + (double) d2 * d2 + (double) d3 * d3 > limit) {
+                        continue;
+                    }
+                }
+                if (exceeds(values, hand * STRIDE, common, order, limit)) {
+                    continue;
+                }
+                final double failure = common == FeatureVector.FULL_MASK
+                        ? fullDistance(values, hand * STRIDE)
+                        : maskedDistance(values, hand * STRIDE, common);
+                if (failure < handMin[owner]) {
+                    handMin[owner] = failure;
+                    bestTotal = Math.min(bestTotal, totals[owner] + failure);
+                }
+            }
+            return bestTotal;
+        }
+
+        private int prepareQuery(FeatureVector features) {
+            for (int i = 0; i < STRIDE; i++) {
+                query[i] = features.isPresent(i) ? features.get(i) * scales[i] : 0f;
+            }
+            return features.getMask();
+        }
+
+        /**
+         * True as soon as the distance summed in the given slot order is above the limit.
+         */
+        private boolean exceeds(FloatBuffer values, int offset, int common, int[] order, double limit) {
+            double sum = 0;
+            for (int k = 0; k < STRIDE; k++) {
+                final int i = order[k];
+                if ((common & (1 << i)) != 0) {
+                    final float difference = query[i] - values.get(offset + i);
+                    sum += (double) difference * difference;
+                    if (sum > limit) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private double fullDistance(FloatBuffer values, int offset) {
+            double sum = 0;
+            for (int i = 0; i < STRIDE; i++) {
+                final float difference = query[i] - values.get(offset + i);
+                sum += (double) difference * difference;
+            }
+            return sum;
+        }
+
+        /**
+         * Normalized like {@link FeatureVector#squaredDistance(FeatureVector)}.
+         */
+        private double maskedDistance(FloatBuffer values, int offset, int common) {
+            double sum = 0;
+            for (int i = 0; i < STRIDE; i++) {
+                if ((common & (1 << i)) != 0) {
+                    final float difference = query[i] - values.get(offset + i);
+                    sum += (double) difference * difference;
+                }
+            }
+            return FeatureVector.normalize(sum, common);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.Gesture;
+
+/**
+ * A library gesture together with its confidentiality for a live gesture,
+ * 100 minus the summed squared angle error. Higher is better.
+ */
+public class GestureMatch {
+    private final Gesture gesture;
+    private final double confidentiality;
+
+    public GestureMatch(Gesture gesture, double confidentiality) {
+        this.gesture = gesture;
+        this.confidentiality = confidentiality;
+    }
+
+    public Gesture getGesture() {
+        return gesture;
+    }
+
+    public double getConfidentiality() {
+        return confidentiality;
+    }
+
+    @Override
+    public String toString() {
+        return gesture.getName() + " " + confidentiality;
+    }
+}
@@ -0,0 +1,150 @@
+package motionjavafx.recognition;
+
+import motionjavafx.metrics.Metrics;
+import motionjavafx.model.Gesture;
+import motionjavafx.model.GestureDAO;
+import motionjavafx.model.HandGesture;
+import motionjavafx.tracking.FrameReplaySource;
+import motionjavafx.tracking.TrackingFrame;
+import motionjavafx.util.DBUtil;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless recognition against a gesture library. Single gestures are matched on the calling thread,
+ * batches are spread over a fork/join pool with one {@link GestureIndex.Searcher} per worker thread.
+ */
+public class GestureRecognizer {
+    public static final int DEFAULT_TOP_K = 3;
+
+    private final GestureIndex index;
+    private final ForkJoinPool pool;
+    private final int topK;
+    private final ThreadLocal<GestureIndex.Searcher> searchers;
+
+    public GestureRecognizer(GestureIndex index) {
+        this(index, ForkJoinPool.commonPool(), DEFAULT_TOP_K);
+    }
+
+    public GestureRecognizer(GestureIndex index, ForkJoinPool pool, int topK) {
+        this.index = index;
+        this.pool = pool;
+        this.topK = topK;
+        this.searchers = ThreadLocal.withInitial(index::newSearcher);
+    }
+
+    public GestureIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Builds the live gesture of a frame, null if no hand is tracked. Hands without a single tracked finger
+     * have no features and are left out.
+     */
+    public static Gesture toGesture(TrackingFrame frame) {
+        if (frame.isEmpty()) {
+            return null;
+        }
+        final long start = Metrics.start();
+        Gesture gesture = new Gesture();
+        for (int i = 0; i < frame.getHandCount(); i++) {
+            final HandGesture handGesture = new HandGesture(frame.getHand(i));
+            if (handGesture.getFeatures().getMask() != 0) {
+                gesture.getHandGestures().add(handGesture);
+            }
+        }
+        Metrics.stop(Metrics.FEATURE_EXTRACTION, start);
+        return gesture.getHandGestures().isEmpty() ? null : gesture;
+    }
+
+    /**
+     * Only the top match, without building a ranking.
+     */
+    public GestureMatch best(Gesture gesture) {
+        final long start = Metrics.start();
+        final GestureMatch match = searchers.get().best(gesture);
+        Metrics.stop(Metrics.MATCHING, start);
+        return match;
+    }
+
+    public RecognitionResult recognize(Gesture gesture) {
+        return new RecognitionResult(gesture.getId(), 0, searchers.get().nearest(gesture, topK));
+    }
+
+    public RecognitionResult recognize(TrackingFrame frame) {
+        final Gesture gesture = toGesture(frame);
+        final List<GestureMatch> matches = gesture == null
+                ? Collections.<GestureMatch>emptyList()
+                : searchers.get().nearest(gesture, topK);
+        return new RecognitionResult(frame.getId(), frame.getTimestamp(), matches);
+    }
+
+    /**
+     * Recognizes all gestures in parallel, results keep the order of the stream.
+     */
+    public List<RecognitionResult> recognizeAll(Stream<Gesture> gestures) {
+        return inPool(() -> gestures.parallel().map(this::recognize).collect(Collectors.toList()));
+    }
+
+    /**
+     * Recognizes recorded frames in parallel, one result per frame in the same order.
+     */
+    public List<RecognitionResult> recognizeBatch(List<TrackingFrame> frames) {
+        return inPool(() -> frames.parallelStream().map(this::recognize).collect(Collectors.toList()));
+    }
+
+    private List<RecognitionResult> inPool(Callable<List<RecognitionResult>> task) {
+        try {
+            return pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recognizing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error while recognizing, " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Scores a recording against the gesture library, compressed like in the application, and prints one line
+     * per frame.
+     * Usage: GestureRecognizer recording [jdbc url or compiled library] [parallelism]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: GestureRecognizer recording [jdbc url or compiled library] [parallelism]");
+            return;
+        }
+        final boolean compiled = args.length > 1 && !args[1].startsWith("jdbc:");
+        if (args.length > 1 && !compiled) {
+            DBUtil.connStr = args[1];
+        }
+        final int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        final List<TrackingFrame> frames = FrameReplaySource.readAll(Paths.get(args[0]));
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final GestureIndex index = compiled
+                    ? GestureIndex.map(Paths.get(args[1]))
+                    : GestureIndex.buildCompressed(GestureDAO.getAllGestures(), PrototypeCompressor.DEFAULT_PROTOTYPES);
+            final GestureRecognizer recognizer = new GestureRecognizer(index, pool, DEFAULT_TOP_K);
+            final long start = System.nanoTime();
+            final List<RecognitionResult> results = recognizer.recognizeBatch(frames);
+            final long millis = (System.nanoTime() - start) / 1000000;
+            for (RecognitionResult result : results) {
+                final GestureMatch best = result.getBest();
+                System.out.println(result.getFrameId() + ";" + result.getTimestamp() + ";"
+                        + (best == null ? "" : best.getGesture().getName() + ";" + best.getConfidentiality()));
+            }
+            System.out.println(frames.size() + " frames in " + millis + " ms");
+        } finally {
+            pool.shutdown();
+            DBUtil.shutdown();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.FeatureVector;
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The original scoring: every library gesture is compared with the live gesture one by one.
+ * Kept as the reference the faster matchers must agree with.
+ *
+ * Hands are assigned by handedness: of all pairs of a live and a stored hand of one side, the one with the
+ * lowest failure is scored. Every live hand without a partner (a side the stored gesture lacks, or the other
+ * live hands of the same side) and every side of the stored gesture without a live hand costs
+ * {@link #HAND_COUNT_PENALTY}.
+ * A stored gesture that shares no side with the live one is incompatible and never scored.
+ */
+public class LinearGestureMatcher {
+    /**
+     * Failure added per unassigned hand, enough to keep a one hand pose below the recognition thresholds
+     * of a two hand sign.
+     */
+    public static final double HAND_COUNT_PENALTY = 20;
+    static final int LEFT_SIDE = 1;
+    static final int RIGHT_SIDE = 2;
+
+    private static final int FINGERS = 5;
+    // fingers of the tip to tip slots, (0,1), (0,2) ... (3,4)
+    private static final int[] PAIR_FIRST = new int[FeatureVector.FTOF_COUNT];
+    private static final int[] PAIR_SECOND = new int[FeatureVector.FTOF_COUNT];
+
+    static {
+        int pair = 0;
+        for (int i = 0; i < FINGERS; i++) {
+            for (int j = i + 1; j < FINGERS; j++) {
+                PAIR_FIRST[pair] = i;
+                PAIR_SECOND[pair++] = j;
+            }
+        }
+    }
+
+    private LinearGestureMatcher() {
+    }
+
+    public static GestureMatch findBestMatch(Collection<Gesture> gestures, Gesture gesture) {
+        return findBestMatch(gestures, gesture, null);
+    }
+
+    /**
+     * Best of the compatible library gestures, null if there is none.
+     *
+     * @param scales per slot scales of the weighted distance, see {@link FeatureWeighting}, null for unweighted
+     */
+    public static GestureMatch findBestMatch(Collection<Gesture> gestures, Gesture gesture, float[] scales) {
+        final int liveSides = sides(gesture.getHandGestures());
+        GestureMatch best = null;
+        for (Gesture gestureFromDb : gestures) {
+            if ((liveSides & sides(gestureFromDb.getHandGestures())) == 0) {
+                continue;
+            }
+            final double confidentiality = calcConfidentiality(gesture, gestureFromDb, scales);
+            if (best == null || confidentiality > best.getConfidentiality()) {
+                best = new GestureMatch(gestureFromDb, confidentiality);
+            }
+        }
+        return best;
+    }
+
+    public static double calcConfidentiality(Gesture gesture, Gesture gestureFromDb) {
+        return calcConfidentiality(gesture, gestureFromDb, null);
+    }
+
+    /**
+     * 100 minus the failure of the hand assignment, around -Double.MAX_VALUE for an incompatible gesture.
+     */
+    public static double calcConfidentiality(Gesture gesture, Gesture gestureFromDb, float[] scales) {
+        final List<HandGesture> liveHands = gesture.getHandGestures();
+        final List<HandGesture> storedHands = gestureFromDb.getHandGestures();
+        final int liveSides = sides(liveHands);
+        final int storedSides = sides(storedHands);
+        if ((liveSides & storedSides) == 0) {
+            return 100 - Double.MAX_VALUE;
+        }
+        double totalFailure = HAND_COUNT_PENALTY * unassignedHands(liveHands, liveSides, storedSides);
+        // sides in the order their first live hand appears, like GestureIndex adds them
+        int assigned = 0;
+        for (HandGesture first : liveHands) {
+            final int side = side(first);
+            if ((assigned & side) != 0 || (storedSides & side) == 0) {
+                continue;
+            }
+            assigned |= side;
+            double minFailure = Double.MAX_VALUE;
+            for (HandGesture handGesture : liveHands) {
+                if (side(handGesture) != side) {
+                    continue;
+                }
+                for (HandGesture matchingHandGesture : storedHands) {
+                    if (side(matchingHandGesture) != side) {
+                        continue;
+                    }
+                    final double failures = calcFailure(handGesture, matchingHandGesture, scales);
+                    if (failures < minFailure) {
+                        minFailure = failures;
+                    }
+                }
+            }
+            totalFailure += minFailure;
+        }
+        return 100 - totalFailure;
+    }
+
+    static int side(HandGesture handGesture) {
+        return handGesture.isRightHand() ? RIGHT_SIDE : LEFT_SIDE;
+    }
+
+    /**
+     * {@link #LEFT_SIDE} and {@link #RIGHT_SIDE} bits of the hands present.
+     */
+    static int sides(List<HandGesture> hands) {
+        int sides = 0;
+        for (int i = 0; i < hands.size(); i++) {
+            sides |= side(hands.get(i));
+        }
+        return sides;
+    }
+
+    /**
+     * Live hands beyond one per side, plus the sides only one of the two gestures has.
+     */
+    static int unassignedHands(List<HandGesture> liveHands, int liveSides, int storedSides) {
+        return liveHands.size() - Integer.bitCount(liveSides) + Integer.bitCount(liveSides ^ storedSides);
+    }
+
+    /**
+     * Squared distance over the slots present in both hands, normalized to all slots
+     * ({@link FeatureVector#squaredDistance(FeatureVector)}), {@link Double#MAX_VALUE} if they have none in common.
+     */
+    public static double calcFailure(HandGesture handGesture, HandGesture matchingHandGesture) {
+        return calcFailure(handGesture, matchingHandGesture, null);
+    }
+
+    /**
+     * Diagonal Mahalanobis distance when scales are the learned ones of {@link FeatureWeighting}.
+     */
+    public static double calcFailure(HandGesture handGesture, HandGesture matchingHandGesture, float[] scales) {
+        final FeatureVector live = handGesture.getFeatures();
+        final FeatureVector stored = matchingHandGesture.getFeatures();
+        if ((live.getMask() & stored.getMask()) == 0) {
+            return Double.MAX_VALUE;
+        }
+        return scales == null ? live.squaredDistance(stored) : live.squaredDistance(stored, scales);
+    }
+
+    public static HandGesture findClosestHand(HandGesture handGesture, Gesture gestureFromDb) {
+        return findClosestHand(handGesture, gestureFromDb, null);
+    }
+
+    /**
+     * The hand of the stored gesture the live hand was scored against, the one with the same
+     * handedness and the lowest failure. Null if there is none.
+     *
+     * @param scales the scales the gesture was scored with, null for unweighted
+     */
+    public static HandGesture findClosestHand(HandGesture handGesture, Gesture gestureFromDb, float[] scales) {
+        HandGesture closest = null;
+        double minFailure = Double.MAX_VALUE;
+        for (HandGesture candidate : gestureFromDb.getHandGestures()) {
+            if (candidate.isRightHand() != handGesture.isRightHand()) {
+                continue;
+            }
+            final double failure = calcFailure(handGesture, candidate, scales);
+            if (closest == null || failure < minFailure) {
+                closest = candidate;
+                minFailure = failure;
+            }
+        }
+        return closest;
+    }
+
+    public static void calcFingerFailure(FeatureVector live, FeatureVector stored, float[] perFinger) {
+        calcFingerFailure(live, stored, null, perFinger);
+    }
+
+    /**
+     * Splits {@link #calcFailure(HandGesture, HandGesture, float[])} over the fingers: a tip to base angle counts
+     * for its finger, a tip to tip angle half for each of the two fingers and the base to wrist angle for
+     * the middle finger. The entries of perFinger add up to the failure.
+     *
+     * @param scales per slot scales, null for unweighted
+     */
+    public static void calcFingerFailure(FeatureVector live, FeatureVector stored, float[] scales, float[] perFinger) {
+        Arrays.fill(perFinger, 0, FINGERS, 0f);
+        final int common = live.getMask() & stored.getMask();
+        final float normalization = (float) FeatureVector.normalize(1, common);
+        for (int slot = 0; slot < FeatureVector.LENGTH; slot++) {
+            if ((common & (1 << slot)) == 0) {
+                continue;
+            }
+            final float difference = scales == null
+                    ? live.get(slot) - stored.get(slot)
+                    : live.get(slot) * scales[slot] - stored.get(slot) * scales[slot];
+            final float failure = difference * difference * normalization;
+            if (slot < FeatureVector.FTOF_OFFSET) {
+                perFinger[slot - FeatureVector.FTOB_OFFSET] += failure;
+            } else if (slot < FeatureVector.BTOW_OFFSET) {
+                final int pair = slot - FeatureVector.FTOF_OFFSET;
+                perFinger[PAIR_FIRST[pair]] += failure / 2;
+                perFinger[PAIR_SECOND[pair]] += failure / 2;
+            } else {
+                perFinger[2] += failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.MotionTemplate;
+
+/**
+ * A motion template that matched the most recent frames of a hand.
+ */
+public class MotionMatch {
+    private final MotionTemplate template;
+    private final double cost;
+    private final int length;
+
+    public MotionMatch(MotionTemplate template, double cost, int length) {
+        this.template = template;
+        this.cost = cost;
+        this.length = length;
+    }
+
+    public MotionTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * DTW cost divided by the template length, the mean squared angle error per template frame.
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * Number of live frames the match spans.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return template.getName() + " " + cost;
+    }
+}
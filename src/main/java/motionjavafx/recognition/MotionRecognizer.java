@@ -0,0 +1,310 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.FeatureVector;
+import motionjavafx.model.MotionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Recognizes moving gestures of one hand with subsequence Dynamic Time Warping.
+ *
+ * Every frame ends a possible match. Every template keeps two rows of the DTW matrix, the cheapest cost
+ * of a path ending at each template frame for the previous and the current live frame, together with the
+ * live frame the path started at (SPRING). A path may start at any frame and is kept within a
+ * Sakoe-Chiba band of width {@code band} around the diagonal from its own start, so a match of a template
+ * with m frames spans m - band to m + band live frames. Each cell keeps only its cheapest path that stays
+ * in the band, so the cost is that of a banded alignment, but not necessarily the cheapest one.
+ *
+ * Frames are compared with {@link #frameDistance}, over the slots present in both frames.
+ *
+ * Before a template is advanced, an LB_Keogh lower bound of the most recent frames against the
+ * template envelope is checked. Templates that cannot reach the threshold stay dormant and cost
+ * only the (early abandoned) bound. When a dormant template becomes possible again, its rows are
+ * rebuilt from the ring buffer of recent frames, which holds every frame a match ending now can span.
+ *
+ * Not thread safe, feed one hand's frames from one thread.
+ */
+public class MotionRecognizer {
+    private static final int STRIDE = FeatureVector.LENGTH;
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    private final double threshold;
+    private final TemplateState[] templates;
+    private final int capacity;
+    private final float[] ring;
+    private final int[] ringMasks;
+    private long frameCount = 0;
+    private long streamStart = 0;
+
+    /**
+     * Templates without any present slot, e.g. from before the palm frame features, are left out.
+     *
+     * @param band      Sakoe-Chiba band width in frames
+     * @param threshold highest accepted mean squared error per template frame
+     */
+    public MotionRecognizer(Collection<MotionTemplate> templates, int band, double threshold) {
+        this.threshold = threshold;
+        final List<TemplateState> states = new ArrayList<>(templates.size());
+        int longest = 0;
+        for (MotionTemplate template : templates) {
+            if (template.getLength() == 0) {
+                throw new IllegalArgumentException("Empty motion template: " + template.getName());
+            }
+            if (!hasFeatures(template)) {
+                continue;
+            }
+            final TemplateState state = new TemplateState(template, Math.min(band, template.getLength() - 1));
+            states.add(state);
+            longest = Math.max(longest, state.slots);
+        }
+        this.templates = states.toArray(new TemplateState[0]);
+        this.capacity = Math.max(1, longest);
+        this.ring = new float[capacity * STRIDE];
+        this.ringMasks = new int[capacity];
+    }
+
+    /**
+     * Squared distance of two frames over the slots present in both, scaled by LENGTH / compared slots so
+     * frames with fewer slots are not closer for it. Infinite if the frames share no slot.
+     */
+    static double frameDistance(float[] a, int aOffset, int aMask, float[] b, int bOffset, int bMask) {
+        final int common = aMask & bMask;
+        if (common == 0) {
+            return INF;
+        }
+        double sum = 0;
+        for (int d = 0; d < STRIDE; d++) {
+            if ((common & (1 << d)) != 0) {
+                final float difference = a[aOffset + d] - b[bOffset + d];
+                sum += (double) difference * difference;
+            }
+        }
+        return FeatureVector.normalize(sum, common);
+    }
+
+    private static boolean hasFeatures(MotionTemplate template) {
+        for (int mask : template.getMasks()) {
+            if (mask != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of templates that can match.
+     */
+    public int getTemplateCount() {
+        return templates.length;
+    }
+
+    /**
+     * Forgets all frames, e.g. when the hand was lost.
+     */
+    public void reset() {
+        streamStart = frameCount;
+        for (TemplateState state : templates) {
+            state.active = false;
+        }
+    }
+
+    /**
+     * Feeds the next frame of the hand. Returns the best template match ending at this frame,
+     * or null. A template is reported at most once per template length.
+     */
+    public MotionMatch update(FeatureVector features) {
+        final long t = frameCount++;
+        final int offset = ringOffset(t);
+        System.arraycopy(features.getValues(), 0, ring, offset, STRIDE);
+        ringMasks[(int) (t % capacity)] = features.getMask();
+
+        MotionMatch best = null;
+        for (TemplateState state : templates) {
+            final double limit = threshold * state.length;
+            if (t - streamStart + 1 < state.length - state.band || state.lowerBound(t, limit) > limit) {
+                state.active = false;
+                continue;
+            }
+            if (state.active) {
+                state.advance(t);
+            } else {
+                state.rebuild(t);
+                state.active = true;
+            }
+            if (t - state.lastReported < state.length) {
+                continue;
+            }
+            final double endCost = state.current[state.length - 1];
+            if (endCost < INF) {
+                final int matchLength = (int) (t - state.currentStart[state.length - 1] + 1);
+                final double cost = endCost / state.length;
+                if (cost <= threshold && (best == null || cost < best.getCost())) {
+                    best = new MotionMatch(state.template, cost, matchLength);
+                }
+            }
+        }
+        if (best != null) {
+            for (TemplateState state : templates) {
+                if (state.template == best.getTemplate()) {
+                    state.lastReported = t;
+                }
+            }
+        }
+        return best;
+    }
+
+    private int ringOffset(long frame) {
+        return (int) (frame % capacity) * STRIDE;
+    }
+
+    private final class TemplateState {
+        private final MotionTemplate template;
+        private final float[] values;
+        private final int[] masks;
+        private final int length;
+        private final int band;
+        // frames a match can span at most, the ring has to hold this many
+        private final int slots;
+        // cost of the cheapest banded path ending at template frame j and the live frame it started at,
+        // for the previous and the current live frame
+        private double[] previous;
+        private double[] current;
+        private long[] previousStart;
+        private long[] currentStart;
+        private final double[] frameDistance;
+        private final float[] upper;
+        private final float[] lower;
+        // slots present in every template frame an envelope position covers, the others give no bound
+        private final int[] envelopeMasks;
+        private boolean active = false;
+        private long lastReported = Long.MIN_VALUE / 2;
+
+        TemplateState(MotionTemplate template, int band) {
+            this.template = template;
+            this.values = template.getFrames();
+            this.masks = template.getMasks();
+            this.length = template.getLength();
+            this.band = band;
+            this.slots = length + band;
+            this.previous = new double[length];
+            this.current = new double[length];
+            this.previousStart = new long[length];
+            this.currentStart = new long[length];
+            this.frameDistance = new double[length];
+            this.upper = new float[length * STRIDE];
+            this.lower = new float[length * STRIDE];
+            this.envelopeMasks = new int[length];
+            // a live frame at end aligned position p can be warped onto template frames p - 2 band .. p + 2 band
+            for (int p = 0; p < length; p++) {
+                int envelopeMask = FeatureVector.FULL_MASK;
+                for (int d = 0; d < STRIDE; d++) {
+                    float max = Float.NEGATIVE_INFINITY;
+                    float min = Float.POSITIVE_INFINITY;
+                    for (int j = Math.max(0, p - 2 * band); j <= Math.min(length - 1, p + 2 * band); j++) {
+                        envelopeMask &= masks[j];
+                        max = Math.max(max, values[j * STRIDE + d]);
+                        min = Math.min(min, values[j * STRIDE + d]);
+                    }
+                    upper[p * STRIDE + d] = max;
+                    lower[p * STRIDE + d] = min;
+                }
+                envelopeMasks[p] = envelopeMask;
+            }
+            Arrays.fill(current, INF);
+        }
+
+        /**
+         * LB_Keogh over the live frames every match ending at t must contain, abandoned above limit.
+         * Only slots present in the live frame and in every template frame of the envelope count, which keeps
+         * it below the scaled frame distances.
+         */
+        double lowerBound(long t, double limit) {
+            double bound = 0;
+            for (int k = 0; k < length - band; k++) {
+                final int frame = ringOffset(t - k);
+                final int p = length - 1 - k;
+                final int present = ringMasks[(int) ((t - k) % capacity)] & envelopeMasks[p];
+                final int e = p * STRIDE;
+                for (int d = 0; d < STRIDE; d++) {
+                    if ((present & (1 << d)) == 0) {
+                        continue;
+                    }
+                    final float x = ring[frame + d];
+                    if (x > upper[e + d]) {
+                        final float difference = x - upper[e + d];
+                        bound += (double) difference * difference;
+                    } else if (x < lower[e + d]) {
+                        final float difference = lower[e + d] - x;
+                        bound += (double) difference * difference;
+                    }
+                }
+                if (bound > limit) {
+                    return bound;
+                }
+            }
+            return bound;
+        }
+
+        /**
+         * Recomputes the rows from the ring buffer up to and including frame t.
+         */
+        void rebuild(long t) {
+            Arrays.fill(current, INF);
+            for (long frame = Math.max(streamStart, t - slots + 1); frame <= t; frame++) {
+                advance(frame);
+            }
+        }
+
+        /**
+         * Moves the rows on to frame t. A path may start at t on the first template frame, every other cell
+         * extends the cheapest of its three predecessors whose path stays in the band.
+         */
+        void advance(long t) {
+            final int x = ringOffset(t);
+            final int xMask = ringMasks[(int) (t % capacity)];
+            for (int j = 0; j < length; j++) {
+                frameDistance[j] = frameDistance(ring, x, xMask, values, j * STRIDE, masks[j]);
+            }
+            final double[] swap = previous;
+            previous = current;
+            current = swap;
+            final long[] swapStart = previousStart;
+            previousStart = currentStart;
+            currentStart = swapStart;
+
+            current[0] = frameDistance[0];
+            currentStart[0] = t;
+            for (int j = 1; j < length; j++) {
+                double best = INF;
+                long start = t;
+                // left: same live frame, previous template frame
+                if (current[j - 1] < best && inBand(t, currentStart[j - 1], j)) {
+                    best = current[j - 1];
+                    start = currentStart[j - 1];
+                }
+                // diagonal
+                if (previous[j - 1] < best && inBand(t, previousStart[j - 1], j)) {
+                    best = previous[j - 1];
+                    start = previousStart[j - 1];
+                }
+                // up: previous live frame, same template frame
+                if (previous[j] < best && inBand(t, previousStart[j], j)) {
+                    best = previous[j];
+                    start = previousStart[j];
+                }
+                current[j] = best == INF ? INF : best + frameDistance[j];
+                currentStart[j] = start;
+            }
+        }
+
+        /**
+         * True if live frame t may be aligned to template frame j on a path that started at start.
+         */
+        private boolean inBand(long t, long start, int j) {
+            return Math.abs(t - start - j) <= band;
+        }
+    }
+}
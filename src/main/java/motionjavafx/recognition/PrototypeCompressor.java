@@ -0,0 +1,245 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.Gesture;
+import motionjavafx.model.GestureDAO;
+import motionjavafx.model.HandGesture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shrinks a library of multi-sample gestures to at most k prototype samples per gesture with k-medoids,
+ * so matching cost stays bounded however many samples are recorded, and single outlier samples lose their vote.
+ * A sample is compressed as a whole ({@link Gesture#getSamples()}), so the hands of a two hand prototype come from
+ * the same frame. Medoids are real samples, so prototypes keep their skeletons for display.
+ *
+ * Gestures with the same name are samples of one sign and are compressed together under the lowest id.
+ * Two samples are as far apart as the failure of scoring one against the other in {@link LinearGestureMatcher},
+ * with the weighted distances of {@link FeatureWeighting}, learn the scales on the full library.
+ * A {@link Cache} keeps the prototypes between library changes.
+ */
+public final class PrototypeCompressor {
+    public static final int DEFAULT_PROTOTYPES = 3;
+    private static final int MAX_ITERATIONS = 20;
+
+    private PrototypeCompressor() {
+    }
+
+    /**
+     * Remembers the prototypes of every gesture name, so that a changed library only recompresses the names
+     * whose gestures changed. Unchanged names keep the medoids picked with the scales they were compressed
+     * with, adding a few samples moves the weighting little.
+     */
+    public static final class Cache {
+        private final int prototypes;
+        private Map<String, Entry> entries = new HashMap<>();
+
+        public Cache(int prototypes) {
+            this.prototypes = prototypes;
+        }
+
+        /**
+         * Same as {@link PrototypeCompressor#compress(Collection, int, float[])}.
+         */
+        public synchronized List<Gesture> compress(Collection<Gesture> gestures, float[] scales) {
+            final Map<String, List<Gesture>> byName = byName(gestures);
+            final Map<String, Entry> next = new HashMap<>();
+            final List<Gesture> compressed = new ArrayList<>(byName.size());
+            for (Map.Entry<String, List<Gesture>> group : byName.entrySet()) {
+                final StringBuilder key = new StringBuilder();
+                for (Gesture gesture : group.getValue()) {
+                    key.append(gesture.getId()).append(':').append(GestureDAO.stamp(gesture)).append(';');
+                }
+                Entry entry = entries.get(group.getKey());
+                if (entry == null || !entry.key.equals(key.toString())) {
+                    entry = new Entry(key.toString(), compressGroup(group.getValue(), prototypes, scales));
+                }
+                next.put(group.getKey(), entry);
+                compressed.add(entry.prototype);
+            }
+            entries = next;
+            return compressed;
+        }
+    }
+
+    private static final class Entry {
+        // ids and stamps of the gestures of the name
+        final String key;
+        final Gesture prototype;
+
+        Entry(String key, Gesture prototype) {
+            this.key = key;
+            this.prototype = prototype;
+        }
+    }
+
+    /**
+     * The prototype hands are copies numbered by prototype sample, the library is not changed.
+     */
+    public static List<Gesture> compress(Collection<Gesture> gestures, int prototypes, float[] scales) {
+        final Map<String, List<Gesture>> byName = byName(gestures);
+        final List<Gesture> compressed = new ArrayList<>(byName.size());
+        for (List<Gesture> group : byName.values()) {
+            compressed.add(compressGroup(group, prototypes, scales));
+        }
+        return compressed;
+    }
+
+    private static Map<String, List<Gesture>> byName(Collection<Gesture> gestures) {
+        final Map<String, List<Gesture>> byName = new LinkedHashMap<>();
+        for (Gesture gesture : gestures) {
+            byName.computeIfAbsent(gesture.getName() == null ? "" : gesture.getName(), name -> new ArrayList<>()).add(gesture);
+        }
+        return byName;
+    }
+
+    private static Gesture compressGroup(List<Gesture> group, int prototypes, float[] scales) {
+        Gesture first = group.get(0);
+        final List<List<HandGesture>> samples = new ArrayList<>();
+        for (Gesture gesture : group) {
+            if (gesture.getId() < first.getId()) {
+                first = gesture;
+            }
+            samples.addAll(gesture.getSamples());
+        }
+        final List<HandGesture> hands = new ArrayList<>();
+        final List<List<HandGesture>> medoids = medoids(samples, prototypes, scales);
+        for (int sample = 0; sample < medoids.size(); sample++) {
+            for (HandGesture hand : medoids.get(sample)) {
+                final HandGesture prototype = new HandGesture();
+                prototype.copyFrom(hand);
+                prototype.setSample(sample);
+                hands.add(prototype);
+            }
+        }
+        return new Gesture(first.getId(), first.getName(), hands);
+    }
+
+    /**
+     * At most k samples that best represent all of them: farthest-first seeding, then alternating
+     * assignment and medoid update until nothing moves.
+     */
+    static List<List<HandGesture>> medoids(List<List<HandGesture>> samples, int k, float[] scales) {
+        final int n = samples.size();
+        if (n <= k) {
+            return samples;
+        }
+        final double[][] distances = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                distances[i][j] = distance(samples.get(i), samples.get(j), scales);
+                distances[j][i] = distances[i][j];
+            }
+        }
+        final int[] medoids = seed(distances, k);
+        final int[] assignment = new int[n];
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            assign(distances, medoids, assignment);
+            boolean moved = false;
+            for (int c = 0; c < medoids.length; c++) {
+                int best = medoids[c];
+                double bestCost = clusterCost(distances, assignment, c, best);
+                for (int candidate = 0; candidate < n; candidate++) {
+                    if (assignment[candidate] != c || candidate == best) {
+                        continue;
+                    }
+                    final double cost = clusterCost(distances, assignment, c, candidate);
+                    if (cost < bestCost) {
+                        best = candidate;
+                        bestCost = cost;
+                    }
+                }
+                moved |= best != medoids[c];
+                medoids[c] = best;
+            }
+            if (!moved) {
+                break;
+            }
+        }
+        Arrays.sort(medoids);
+        final List<List<HandGesture>> prototypes = new ArrayList<>(medoids.length);
+        for (int medoid : medoids) {
+            prototypes.add(samples.get(medoid));
+        }
+        return prototypes;
+    }
+
+    /**
+     * The larger failure of scoring sample a against sample b and b against a. The matcher only penalizes surplus
+     * hands of a side in the live gesture, so one direction alone is not symmetric. Samples without a common side, which the matcher would not compare, cost
+     * {@link LinearGestureMatcher#HAND_COUNT_PENALTY} for each of their hands.
+     */
+    static double distance(List<HandGesture> a, List<HandGesture> b, float[] scales) {
+        if ((LinearGestureMatcher.sides(a) & LinearGestureMatcher.sides(b)) == 0) {
+            return LinearGestureMatcher.HAND_COUNT_PENALTY * (a.size() + b.size());
+        }
+        final Gesture first = new Gesture(0, null, a);
+        final Gesture second = new Gesture(0, null, b);
+        return 100 - Math.min(LinearGestureMatcher.calcConfidentiality(first, second, scales),
+                LinearGestureMatcher.calcConfidentiality(second, first, scales));
+    }
+
+    /**
+     * The most central sample first, then repeatedly the sample farthest from all chosen ones.
+     * Fewer than k if the samples have fewer distinct values.
+     */
+    private static int[] seed(double[][] distances, int k) {
+        final int n = distances.length;
+        final int[] medoids = new int[k];
+        double bestTotal = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            double total = 0;
+            for (int j = 0; j < n; j++) {
+                total += distances[i][j];
+            }
+            if (total < bestTotal) {
+                bestTotal = total;
+                medoids[0] = i;
+            }
+        }
+        final double[] nearest = distances[medoids[0]].clone();
+        for (int c = 1; c < k; c++) {
+            int farthest = 0;
+            for (int i = 1; i < n; i++) {
+                if (nearest[i] > nearest[farthest]) {
+                    farthest = i;
+                }
+            }
+            if (nearest[farthest] == 0) {
+                return Arrays.copyOf(medoids, c);
+            }
+            medoids[c] = farthest;
+            for (int i = 0; i < n; i++) {
+                nearest[i] = Math.min(nearest[i], distances[farthest][i]);
+            }
+        }
+        return medoids;
+    }
+
+    private static void assign(double[][] distances, int[] medoids, int[] assignment) {
+        for (int i = 0; i < assignment.length; i++) {
+            int best = 0;
+            for (int c = 1; c < medoids.length; c++) {
+                if (distances[i][medoids[c]] < distances[i][medoids[best]]) {
+                    best = c;
+                }
+            }
+            assignment[i] = best;
+        }
+    }
+
+    private static double clusterCost(double[][] distances, int[] assignment, int cluster, int medoid) {
+        double cost = 0;
+        for (int i = 0; i < assignment.length; i++) {
+            if (assignment[i] == cluster) {
+                cost += distances[medoid][i];
+            }
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,38 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.Gesture;
+
+/**
+ * A stable change of the recognized gesture. The gesture is null when recognition fell back to "nothing".
+ */
+public class RecognitionEvent {
+    private final Gesture gesture;
+    private final double confidentiality;
+    private final long timestamp;
+
+    public RecognitionEvent(Gesture gesture, double confidentiality, long timestamp) {
+        this.gesture = gesture;
+        this.confidentiality = confidentiality;
+        this.timestamp = timestamp;
+    }
+
+    public Gesture getGesture() {
+        return gesture;
+    }
+
+    /**
+     * Smoothed confidentiality at the time of the change.
+     */
+    public double getConfidentiality() {
+        return confidentiality;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return (gesture == null ? "-" : gesture.getName()) + " " + confidentiality;
+    }
+}
@@ -0,0 +1,45 @@
+package motionjavafx.recognition;
+
+import java.util.List;
+
+/**
+ * Ranked matches for one recognized frame or gesture, best first.
+ */
+public class RecognitionResult {
+    private final long frameId;
+    private final long timestamp;
+    private final List<GestureMatch> matches;
+
+    public RecognitionResult(long frameId, long timestamp, List<GestureMatch> matches) {
+        this.frameId = frameId;
+        this.timestamp = timestamp;
+        this.matches = matches;
+    }
+
+    public long getFrameId() {
+        return frameId;
+    }
+
+    /**
+     * Device timestamp of the frame in microseconds, 0 if the result was not made from a frame.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<GestureMatch> getMatches() {
+        return matches;
+    }
+
+    /**
+     * The top match, or null if there was no hand or the library is empty.
+     */
+    public GestureMatch getBest() {
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    @Override
+    public String toString() {
+        return frameId + ": " + matches;
+    }
+}
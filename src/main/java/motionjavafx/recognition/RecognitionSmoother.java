@@ -0,0 +1,124 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.Gesture;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Debounces the per-frame best match before it reaches the UI.
+ * The label is a majority vote over the last frames, the confidentiality an exponential moving average.
+ * A new gesture is only reported once it has enough votes and the average is above the enter threshold,
+ * it is dropped again when the average falls below the (lower) exit threshold or "no hand" wins the vote.
+ *
+ * Uses a fixed ring buffer, memory does not grow with the number of frames. Not thread safe,
+ * feed it from one recognition thread.
+ */
+public class RecognitionSmoother {
+    private static final double MIN_CONFIDENTIALITY = 0;
+    private static final double MAX_CONFIDENTIALITY = 100;
+
+    private final Gesture[] votes;
+    private final int minVotes;
+    private final double alpha;
+    private final double enterThreshold;
+    private final double exitThreshold;
+    private final Consumer<RecognitionEvent> listener;
+
+    private int next = 0;
+    private int filled = 0;
+    private double average = Double.NaN;
+    private Gesture stable = null;
+
+    public RecognitionSmoother(int window, int minVotes, double alpha, double enterThreshold, double exitThreshold,
+                               Consumer<RecognitionEvent> listener) {
+        if (minVotes > window || minVotes <= window / 2) {
+            throw new IllegalArgumentException("minVotes must be a majority of the window: " + minVotes + "/" + window);
+        }
+        if (exitThreshold > enterThreshold) {
+            throw new IllegalArgumentException("exitThreshold must not be above enterThreshold");
+        }
+        this.votes = new Gesture[window];
+        this.minVotes = minVotes;
+        this.alpha = alpha;
+        this.enterThreshold = enterThreshold;
+        this.exitThreshold = exitThreshold;
+        this.listener = listener;
+    }
+
+    /**
+     * Feeds the best match of one frame, null if no hand was tracked.
+     */
+    public void update(GestureMatch match, long timestamp) {
+        final Gesture gesture = match == null ? null : match.getGesture();
+        // scores of a missing hand are around -Double.MAX_VALUE, clamp so the average can recover
+        final double confidentiality = match == null ? MIN_CONFIDENTIALITY
+                : Math.max(MIN_CONFIDENTIALITY, Math.min(MAX_CONFIDENTIALITY, match.getConfidentiality()));
+        average = Double.isNaN(average) ? confidentiality : alpha * confidentiality + (1 - alpha) * average;
+
+        votes[next] = gesture;
+        next = (next + 1) % votes.length;
+        if (filled < votes.length) {
+            filled++;
+        }
+
+        final Gesture leader = majority();
+        if (stable != null && (average < exitThreshold || (leader == null && countVotes(null) >= minVotes))) {
+            stable = null;
+            listener.accept(new RecognitionEvent(null, average, timestamp));
+        } else if (leader != null && !leader.equals(stable) && average >= enterThreshold) {
+            stable = leader;
+            listener.accept(new RecognitionEvent(leader, average, timestamp));
+        }
+    }
+
+    /**
+     * The gesture that has at least minVotes of the window, null if there is none or if it is "no hand".
+     */
+    private Gesture majority() {
+        // Boyer-Moore vote, the candidate is the only possible majority
+        Gesture candidate = null;
+        int count = 0;
+        for (int i = 0; i < filled; i++) {
+            if (count == 0) {
+                candidate = votes[i];
+                count = 1;
+            } else if (Objects.equals(votes[i], candidate)) {
+                count++;
+            } else {
+                count--;
+            }
+        }
+        if (candidate == null || countVotes(candidate) < minVotes) {
+            return null;
+        }
+        return candidate;
+    }
+
+    private int countVotes(Gesture gesture) {
+        int count = 0;
+        for (int i = 0; i < filled; i++) {
+            if (Objects.equals(votes[i], gesture)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public Gesture getStable() {
+        return stable;
+    }
+
+    public double getAverage() {
+        return average;
+    }
+
+    public void reset() {
+        Arrays.fill(votes, null);
+        next = 0;
+        filled = 0;
+        average = Double.NaN;
+        stable = null;
+    }
+}
@@ -0,0 +1,67 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+import motionjavafx.tracking.TrackingFrame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records one gesture from several frames: every interval-th frame with tracked hands becomes a sample
+ * until the wanted number of samples is reached. All hands of all samples end up in one {@link Gesture},
+ * so the recognizer sees them as repeated recordings of the same sign, the hands of one frame share their
+ * {@link HandGesture#getSample()}. Fed from a single thread.
+ */
+public class SampleBurst {
+    private final String name;
+    private final int samples;
+    private final int interval;
+    private final List<HandGesture> hands = new ArrayList<>();
+    private int recorded = 0;
+    private int skipped = 0;
+
+    public SampleBurst(String name, int samples, int interval) {
+        if (samples < 1 || interval < 1) {
+            throw new IllegalArgumentException("Samples and interval must be positive: " + samples + ", " + interval);
+        }
+        this.name = name;
+        this.samples = samples;
+        this.interval = interval;
+    }
+
+    /**
+     * Takes the frame as a sample if it is due and has hands. Returns true once the burst is complete.
+     */
+    public boolean add(TrackingFrame frame) {
+        if (isComplete() || frame.isEmpty()) {
+            return isComplete();
+        }
+        if (recorded > 0 && ++skipped < interval) {
+            return false;
+        }
+        skipped = 0;
+        for (int i = 0; i < frame.getHandCount(); i++) {
+            final HandGesture hand = new HandGesture(frame.getHand(i));
+            hand.setSample(recorded);
+            hands.add(hand);
+        }
+        recorded++;
+        return isComplete();
+    }
+
+    public boolean isComplete() {
+        return recorded >= samples;
+    }
+
+    public int getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * The gesture with all samples recorded so far.
+     */
+    public Gesture build() {
+        return new Gesture(0, name, new ArrayList<>(hands));
+    }
+}
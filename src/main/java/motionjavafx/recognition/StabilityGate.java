@@ -0,0 +1,148 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.HandSkeleton;
+import motionjavafx.tracking.TrackingFrame;
+
+import java.util.Arrays;
+
+/**
+ * Decides which frames are worth matching. A frame passes only when every hand in it is tracked with at
+ * least minConfidence and has held still for holdMicros, meaning neither the palm nor any finger tip
+ * moved faster than maxSpeed. While the pose is held, at most one frame per refreshMicros passes.
+ * Frames of a moving or barely tracked hand would only feed noise to the matcher and the smoother.
+ *
+ * Speeds are taken between consecutive frames offered to the gate, per handedness, from the device
+ * timestamps. Allocation free, not thread safe, feed it from one thread.
+ */
+public class StabilityGate {
+    public static final float DEFAULT_MAX_SPEED = 100f;
+    public static final float DEFAULT_MIN_CONFIDENCE = 0.3f;
+    public static final long DEFAULT_HOLD_MICROS = 100_000;
+    public static final long DEFAULT_REFRESH_MICROS = 50_000;
+
+    private static final int SIDES = 2;
+    // palm and the five finger tips
+    private static final int TRACKED_POINTS = HandSkeleton.FINGER_COUNT + 1;
+
+    private final float maxSpeed;
+    private final float minConfidence;
+    private final long holdMicros;
+    private final long refreshMicros;
+
+    private final float[] previous = new float[SIDES * TRACKED_POINTS * 3];
+    private final long[] previousTimestamp = new long[SIDES];
+    private final int[] previousId = new int[SIDES];
+    private final boolean[] seen = new boolean[SIDES];
+    // timestamp since which the hand is still, -1 while it moves
+    private final long[] stillSince = new long[SIDES];
+    private long lastPassed = -1;
+    private volatile long passed = 0;
+    private volatile long held = 0;
+
+    public StabilityGate() {
+        this(DEFAULT_MAX_SPEED, DEFAULT_MIN_CONFIDENCE, DEFAULT_HOLD_MICROS, DEFAULT_REFRESH_MICROS);
+    }
+
+    /**
+     * @param maxSpeed      fastest palm or tip movement of a still hand, in millimeters per second
+     * @param minConfidence lowest tracking confidence of a hand, 0 to 1
+     * @param holdMicros    how long a hand has to be still before its frames pass
+     * @param refreshMicros least time between two passing frames
+     */
+    public StabilityGate(float maxSpeed, float minConfidence, long holdMicros, long refreshMicros) {
+        if (maxSpeed <= 0 || holdMicros < 0 || refreshMicros < 0) {
+            throw new IllegalArgumentException("Speed must be positive and times not negative: "
+                    + maxSpeed + ", " + holdMicros + ", " + refreshMicros);
+        }
+        this.maxSpeed = maxSpeed;
+        this.minConfidence = minConfidence;
+        this.holdMicros = holdMicros;
+        this.refreshMicros = refreshMicros;
+        Arrays.fill(stillSince, -1);
+    }
+
+    /**
+     * Updates the motion state with the frame and returns true if it should be matched.
+     * Frames without hands never pass, they only reset the state.
+     */
+    public boolean accept(TrackingFrame frame) {
+        final long timestamp = frame.getTimestamp();
+        boolean present0 = false;
+        boolean present1 = false;
+        boolean pass = !frame.isEmpty();
+        for (int h = 0; h < frame.getHandCount(); h++) {
+            final HandSkeleton hand = frame.getHand(h);
+            final int side = hand.isRightHand() ? 1 : 0;
+            if (side == 0) {
+                present0 = true;
+            } else {
+                present1 = true;
+            }
+            update(side, hand, timestamp);
+            pass &= hand.getConfidence() >= minConfidence
+                    && stillSince[side] >= 0 && timestamp - stillSince[side] >= holdMicros;
+        }
+        seen[0] = present0;
+        seen[1] = present1;
+        // a timestamp before the last pass means the source started over, e.g. a looping replay
+        if (pass && lastPassed >= 0 && timestamp >= lastPassed && timestamp - lastPassed < refreshMicros) {
+            pass = false;
+        }
+        if (pass) {
+            lastPassed = timestamp;
+            passed++;
+        } else if (!frame.isEmpty()) {
+            held++;
+        }
+        return pass;
+    }
+
+    /**
+     * Compares the hand with its previous frame and remembers it for the next one.
+     */
+    private void update(int side, HandSkeleton hand, long timestamp) {
+        final float[] points = hand.getPoints();
+        final int base = side * TRACKED_POINTS * 3;
+        final long elapsed = timestamp - previousTimestamp[side];
+        final boolean continued = seen[side] && previousId[side] == hand.getId() && elapsed > 0;
+        // compare squared distances against the squared distance allowed in the elapsed time
+        final float allowed = maxSpeed * elapsed / 1e6f;
+        final float allowedSquared = allowed * allowed;
+        boolean still = continued;
+        for (int k = 0; k < TRACKED_POINTS; k++) {
+            final int point = k < HandSkeleton.FINGER_COUNT ? HandSkeleton.tipIndex(k) : HandSkeleton.PALM;
+            final int p = point * 3;
+            final int q = base + k * 3;
+            if (still) {
+                final float dx = points[p] - previous[q];
+                final float dy = points[p + 1] - previous[q + 1];
+                final float dz = points[p + 2] - previous[q + 2];
+                still = dx * dx + dy * dy + dz * dz <= allowedSquared;
+            }
+            previous[q] = points[p];
+            previous[q + 1] = points[p + 1];
+            previous[q + 2] = points[p + 2];
+        }
+        if (!still) {
+            stillSince[side] = -1;
+        } else if (stillSince[side] < 0) {
+            stillSince[side] = previousTimestamp[side];
+        }
+        previousTimestamp[side] = timestamp;
+        previousId[side] = hand.getId();
+    }
+
+    /**
+     * Frames that passed so far.
+     */
+    public long getPassed() {
+        return passed;
+    }
+
+    /**
+     * Frames with hands that were held back so far.
+     */
+    public long getHeld() {
+        return held;
+    }
+}
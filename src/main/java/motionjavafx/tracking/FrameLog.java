@@ -0,0 +1,96 @@
+package motionjavafx.tracking;
+
+import motionjavafx.model.HandSkeleton;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout of a frame recording, little-endian:
+ * <pre>
+ * header: int magic, int version
+ * frame:  long id, long timestamp, byte handCount, handCount * hand
+ * hand:   int id, byte flags (bit 0 = right hand), byte fingerMask, float confidence,
+ *         HandSkeleton.FLOAT_COUNT * float points
+ * </pre>
+ * Version 1 recordings hold bone centres instead of finger joints, they are converted while reading.
+ */
+final class FrameLog {
+    static final int MAGIC = 0x4D4A4658; // "MJFX"
+    static final int VERSION = 2;
+    static final int CENTRES_VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int FRAME_HEADER_SIZE = 17;
+    static final int HAND_SIZE = 10 + HandSkeleton.FLOAT_COUNT * 4;
+    static final int MAX_FRAME_SIZE = FRAME_HEADER_SIZE + TrackingFrame.MAX_HANDS * HAND_SIZE;
+
+    private FrameLog() {
+    }
+
+    static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+    }
+
+    /**
+     * Returns the version of the recording.
+     */
+    static int readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a frame recording");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION && version != CENTRES_VERSION) {
+            throw new IOException("Unsupported frame recording version: " + version);
+        }
+        return version;
+    }
+
+    static void write(ByteBuffer buffer, TrackingFrame frame) {
+        buffer.putLong(frame.getId());
+        buffer.putLong(frame.getTimestamp());
+        buffer.put((byte) frame.getHandCount());
+        for (int i = 0; i < frame.getHandCount(); i++) {
+            final HandSkeleton hand = frame.getHand(i);
+            buffer.putInt(hand.getId());
+            buffer.put((byte) (hand.isRightHand() ? 1 : 0));
+            buffer.put((byte) hand.getFingerMask());
+            buffer.putFloat(hand.getConfidence());
+            final float[] points = hand.getPoints();
+            for (int p = 0; p < HandSkeleton.FLOAT_COUNT; p++) {
+                buffer.putFloat(points[p]);
+            }
+        }
+    }
+
+    /**
+     * Version of a recording that starts at position 0 of the buffer, read without moving it.
+     */
+    static int version(ByteBuffer log) {
+        return log.getInt(4);
+    }
+
+    /**
+     * @param version version of the recording, see {@link #readHeader(ByteBuffer)}
+     */
+    static void read(ByteBuffer buffer, TrackingFrame frame, int version) {
+        frame.setId(buffer.getLong());
+        frame.setTimestamp(buffer.getLong());
+        final int handCount = buffer.get();
+        frame.clear();
+        for (int i = 0; i < handCount; i++) {
+            final HandSkeleton hand = frame.addHand();
+            hand.setId(buffer.getInt());
+            hand.setRightHand((buffer.get() & 1) != 0);
+            hand.setFingerMask(buffer.get());
+            hand.setConfidence(buffer.getFloat());
+            final float[] points = hand.getPoints();
+            for (int p = 0; p < HandSkeleton.FLOAT_COUNT; p++) {
+                points[p] = buffer.getFloat();
+            }
+            if (version == CENTRES_VERSION) {
+                HandSkeleton.centresToJoints(points);
+            }
+        }
+    }
+}
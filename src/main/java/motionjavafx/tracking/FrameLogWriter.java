@@ -0,0 +1,67 @@
+package motionjavafx.tracking;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends frames to a recording through a memory mapped window that is moved
+ * forward as the file grows. See {@link FrameLog} for the format.
+ */
+public class FrameLogWriter implements AutoCloseable {
+    private static final int REGION_SIZE = 4 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart = 0;
+    private long frameCount = 0;
+
+    public FrameLogWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        mapRegion(0);
+        FrameLog.writeHeader(region);
+    }
+
+    public synchronized void write(TrackingFrame frame) throws IOException {
+        if (region == null) {
+            throw new IOException("Recording already closed");
+        }
+        if (region.remaining() < FrameLog.MAX_FRAME_SIZE) {
+            mapRegion(regionStart + region.position());
+        }
+        FrameLog.write(region, frame);
+        frameCount++;
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    private void mapRegion(long start) throws IOException {
+        if (region != null) {
+            region.force();
+        }
+        regionStart = start;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+        region.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Flushes the mapped window and cuts the file back to the bytes actually written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        final long size = regionStart + region.position();
+        region.force();
+        region = null;
+        channel.truncate(size);
+        channel.close();
+    }
+}
@@ -0,0 +1,160 @@
+package motionjavafx.tracking;
+
+import motionjavafx.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Single ingestion point for tracking frames. Every frame is published exactly once
+ * and handed to each registered stage through its own bounded queue, so a slow stage
+ * (e.g. recognition) never delays a fast one (e.g. rendering).
+ *
+ * Stages run on daemon threads and are stopped by {@link #close()}. With metrics on, the queue size and
+ * dropped frames of every stage are published as gauges "stage.NAME.queued" and "stage.NAME.dropped".
+ */
+public class FramePipeline<F> implements AutoCloseable {
+
+    /**
+     * What a stage queue does when a new frame arrives and the queue is full.
+     */
+    public enum BackPressure {
+        /** Drop the oldest queued frame and keep the backlog in order. */
+        DROP_OLDEST,
+        /** Throw away everything still queued, the stage only ever sees the newest frame. */
+        COALESCE
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+    private volatile boolean running = false;
+
+    /**
+     * Registers a stage. Must be called before {@link #start()}.
+     */
+    public FramePipeline<F> addStage(String name, int capacity, BackPressure backPressure, Consumer<F> consumer) {
+        if (running) {
+            throw new IllegalStateException("Pipeline already started, cannot add stage " + name);
+        }
+        stages.add(new Stage(name, capacity, backPressure, consumer));
+        return this;
+    }
+
+    public void start() {
+        running = true;
+        for (Stage stage : stages) {
+            Metrics.registerGauge(stage.gaugeName + ".queued", stage.queue::size);
+            Metrics.registerGauge(stage.gaugeName + ".dropped", stage.dropped::get);
+            stage.start();
+        }
+    }
+
+    /**
+     * Hands the frame to every stage. Never blocks the caller.
+     */
+    public void publish(F frame) {
+        if (!running || frame == null) {
+            return;
+        }
+        for (int i = 0; i < stages.size(); i++) {
+            stages.get(i).offer(frame);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Number of frames a stage never got to see because of its back-pressure policy.
+     */
+    public long getDroppedFrames(String stageName) {
+        for (Stage stage : stages) {
+            if (stage.name.equals(stageName)) {
+                return stage.dropped.get();
+            }
+        }
+        throw new IllegalArgumentException("Unknown stage: " + stageName);
+    }
+
+    /**
+     * Stops all stage threads and waits for them to finish their current frame.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Stage stage : stages) {
+            Metrics.unregisterGauge(stage.gaugeName + ".queued");
+            Metrics.unregisterGauge(stage.gaugeName + ".dropped");
+            stage.thread.interrupt();
+        }
+        for (Stage stage : stages) {
+            try {
+                stage.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private final class Stage implements Runnable {
+        private final String name;
+        private final String gaugeName;
+        private final BlockingQueue<F> queue;
+        private final BackPressure backPressure;
+        private final Consumer<F> consumer;
+        private final AtomicLong dropped = new AtomicLong();
+        private final Thread thread;
+
+        Stage(String name, int capacity, BackPressure backPressure, Consumer<F> consumer) {
+            this.name = name;
+            this.gaugeName = "stage." + name;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.backPressure = backPressure;
+            this.consumer = consumer;
+            this.thread = new Thread(this, "frame-stage-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void offer(F frame) {
+            if (backPressure == BackPressure.COALESCE) {
+                dropped.addAndGet(queue.size());
+                queue.clear();
+            }
+            while (!queue.offer(frame)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                final F frame;
+                try {
+                    frame = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (frame == null) {
+                    continue;
+                }
+                try {
+                    consumer.accept(frame);
+                } catch (RuntimeException e) {
+                    System.out.println("Stage " + name + " failed on frame: " + e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package motionjavafx.tracking;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Passes the frames of another source through unchanged and records each of them to a file
+ * that {@link FrameReplaySource} can play back.
+ */
+public class FrameRecorder implements FrameSource {
+
+    private final FrameSource delegate;
+    private final FrameLogWriter writer;
+
+    public FrameRecorder(FrameSource delegate, Path file) throws IOException {
+        this.delegate = delegate;
+        this.writer = new FrameLogWriter(file);
+    }
+
+    @Override
+    public void start(Consumer<TrackingFrame> sink) {
+        delegate.start(frame -> {
+            try {
+                writer.write(frame);
+            } catch (IOException e) {
+                System.out.println("Could not record frame " + frame.getId() + ": " + e);
+            }
+            sink.accept(frame);
+        });
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Error while closing recording, " + e);
+        }
+    }
+}
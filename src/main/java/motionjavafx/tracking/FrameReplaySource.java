@@ -0,0 +1,123 @@
+package motionjavafx.tracking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Plays back a recording written by {@link FrameRecorder} or {@link FrameLogWriter}.
+ * The speed is a multiple of the recorded timing, {@link #REAL_TIME} keeps the original pace and
+ * {@link #AS_FAST_AS_POSSIBLE} hands out frames as fast as the sink takes them.
+ */
+public class FrameReplaySource implements FrameSource {
+    public static final double REAL_TIME = 1.0;
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private final MappedByteBuffer log;
+    private final int version;
+    private final double speed;
+    private final boolean loop;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    public FrameReplaySource(Path file, double speed, boolean loop) throws IOException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Replay speed must be positive: " + speed);
+        }
+        this.log = map(file);
+        this.version = FrameLog.version(log);
+        this.speed = speed;
+        this.loop = loop;
+    }
+
+    public FrameReplaySource(Path file) throws IOException {
+        this(file, REAL_TIME, false);
+    }
+
+    /**
+     * Reads the whole recording into memory, for batch processing.
+     */
+    public static List<TrackingFrame> readAll(Path file) throws IOException {
+        final MappedByteBuffer buffer = map(file);
+        final int version = FrameLog.version(buffer);
+        final List<TrackingFrame> frames = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            final TrackingFrame frame = new TrackingFrame();
+            FrameLog.read(buffer, frame, version);
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Recording too large to map: " + file);
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            FrameLog.readHeader(buffer);
+            return buffer;
+        }
+    }
+
+    @Override
+    public void start(Consumer<TrackingFrame> sink) {
+        running = true;
+        thread = new Thread(() -> replay(sink), "frame-replay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void replay(Consumer<TrackingFrame> sink) {
+        // every run gets its own view, the mapped buffer itself is never moved
+        do {
+            final ByteBuffer buffer = log.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            long firstTimestamp = -1;
+            final long startNanos = System.nanoTime();
+            while (running && buffer.hasRemaining()) {
+                final TrackingFrame frame = new TrackingFrame();
+                FrameLog.read(buffer, frame, version);
+                if (firstTimestamp < 0) {
+                    firstTimestamp = frame.getTimestamp();
+                }
+                if (speed != AS_FAST_AS_POSSIBLE) {
+                    final long dueNanos = startNanos
+                            + (long) (TimeUnit.MICROSECONDS.toNanos(frame.getTimestamp() - firstTimestamp) / speed);
+                    long waitNanos;
+                    while (running && (waitNanos = dueNanos - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                    }
+                }
+                sink.accept(frame);
+            }
+        } while (running && loop);
+        running = false;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
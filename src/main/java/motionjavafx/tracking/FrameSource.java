@@ -0,0 +1,18 @@
+package motionjavafx.tracking;
+
+import java.util.function.Consumer;
+
+/**
+ * Produces tracking frames, either from the Leap device or from a recording.
+ * Each frame is handed to the sink exactly once, on a thread owned by the source.
+ */
+public interface FrameSource extends AutoCloseable {
+
+    void start(Consumer<TrackingFrame> sink);
+
+    /**
+     * Stops delivering frames and releases the underlying device or file.
+     */
+    @Override
+    void close();
+}
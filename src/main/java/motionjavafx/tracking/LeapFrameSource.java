@@ -0,0 +1,60 @@
+package motionjavafx.tracking;
+
+import com.leapmotion.leap.Controller;
+import com.leapmotion.leap.Frame;
+import com.leapmotion.leap.Listener;
+
+import java.util.function.Consumer;
+
+/**
+ * Live frames from a Leap Motion controller. Every frame is pulled exactly once
+ * from the controller callback and converted to a {@link TrackingFrame}.
+ */
+public class LeapFrameSource implements FrameSource {
+
+    private final Controller controller;
+    private Listener listener;
+
+    public LeapFrameSource() {
+        controller = new Controller();
+    }
+
+    @Override
+    public void start(Consumer<TrackingFrame> sink) {
+        listener = new Listener() {
+            private long lastFrameId = -1;
+
+            @Override
+            public void onConnect(Controller controller) {
+                System.out.println("Connected");
+            }
+
+            @Override
+            public void onDisconnect(Controller controller) {
+                //Note: not dispatched when running in a debugger.
+                System.out.println("Disconnected");
+            }
+
+            @Override
+            public void onFrame(Controller controller) {
+                final Frame frame = controller.frame();
+                if (!frame.isValid() || frame.id() == lastFrameId) {
+                    return;
+                }
+                lastFrameId = frame.id();
+                sink.accept(TrackingFrame.fromLeap(frame));
+            }
+        };
+        controller.setPolicy(Controller.PolicyFlag.POLICY_BACKGROUND_FRAMES);
+        controller.addListener(listener);
+    }
+
+    @Override
+    public void close() {
+        if (listener != null) {
+            controller.removeListener(listener);
+            listener = null;
+        }
+        controller.delete();
+    }
+}
@@ -0,0 +1,105 @@
+package motionjavafx.tracking;
+
+import com.leapmotion.leap.Frame;
+import com.leapmotion.leap.Hand;
+import motionjavafx.model.HandSkeleton;
+
+/**
+ * Device independent snapshot of one tracking frame.
+ * Once a frame has been handed to a {@link FrameSource} sink it must not be modified anymore.
+ */
+public class TrackingFrame {
+    public static final int MAX_HANDS = 2;
+
+    private long id;
+    private long timestamp;
+    private long receivedAt;
+    private final HandSkeleton[] hands = new HandSkeleton[MAX_HANDS];
+    private int handCount;
+
+    public TrackingFrame() {
+        for (int i = 0; i < MAX_HANDS; i++) {
+            hands[i] = new HandSkeleton();
+        }
+    }
+
+    public static TrackingFrame fromLeap(Frame frame) {
+        final TrackingFrame trackingFrame = new TrackingFrame();
+        trackingFrame.set(frame);
+        return trackingFrame;
+    }
+
+    /**
+     * Copies the Leap frame. Hands beyond {@link #MAX_HANDS} are ignored.
+     */
+    public void set(Frame frame) {
+        id = frame.id();
+        timestamp = frame.timestamp();
+        handCount = 0;
+        for (Hand hand : frame.hands()) {
+            if (handCount == MAX_HANDS) {
+                break;
+            }
+            hands[handCount++].set(hand);
+        }
+    }
+
+    /**
+     * Returns the next unused hand slot and counts it as present.
+     */
+    public HandSkeleton addHand() {
+        if (handCount == MAX_HANDS) {
+            throw new IllegalStateException("A frame holds at most " + MAX_HANDS + " hands");
+        }
+        return hands[handCount++];
+    }
+
+    public void clear() {
+        handCount = 0;
+    }
+
+    public HandSkeleton getHand(int index) {
+        if (index >= handCount) {
+            throw new IndexOutOfBoundsException("Hand " + index + " of " + handCount);
+        }
+        return hands[index];
+    }
+
+    public int getHandCount() {
+        return handCount;
+    }
+
+    public boolean isEmpty() {
+        return handCount == 0;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Device timestamp in microseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * {@link System#nanoTime()} when the application received the frame, 0 if not measured.
+     */
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    public void setReceivedAt(long receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+}
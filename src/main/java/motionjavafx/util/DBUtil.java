@@ -1,171 +1,337 @@
 package motionjavafx.util;
 
-import com.sun.rowset.CachedRowSetImpl;
+import motionjavafx.metrics.Metrics;
 
 import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by lena on 10/24/16.
+ *
+ * Every thread gets one long-lived SQLite connection in WAL mode, opened on first use and
+ * reopened only when {@link #connStr} changes. Prepared statements are cached per connection
+ * by their SQL text and whether they return generated keys, and must not be closed by callers. Every executed statement is timed in {@link Metrics#DB_CALL}.
  */
 public class DBUtil {
     //Declare JDBC Driver
     private static final String JDBC_DRIVER = "org.sqlite.JDBC";
+    private static final int STATEMENT_CACHE_SIZE = 64;
 
-    //Connection
-    private static Connection conn = null;
-
-    //CREATE TABLE HandGesture (Gestureid integer, id integer primary key, isrighthand smallint)
-    //CREATE TABLE Gesture (id integer primary key, name text)
-    //CREATE TABLE Angle (AngleType numeric, handgestureid integer, id integer primary key, value numeric)
+    //Tables and schema version are created and migrated by motionjavafx.model.GestureSchema, see its CREATE statements
 
     public static String connStr = "jdbc:sqlite:/home/lena/programming/LeapMotionDB/db";
 
+    //Pragmas applied to every new connection
+    public static String synchronous = System.getProperty("motionjavafx.db.synchronous", "NORMAL");
+    public static int cacheSize = Integer.getInteger("motionjavafx.db.cacheSize", -8000);
+    public static long mmapSize = Long.getLong("motionjavafx.db.mmapSize", 256L * 1024 * 1024);
+
+    private static volatile boolean driverLoaded = false;
+    private static final ThreadLocal<PooledConnection> connections = new ThreadLocal<>();
+    private static final Set<PooledConnection> openConnections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The connection of the calling thread together with its statement cache.
+     */
+    private static final class PooledConnection {
+        private final String url;
+        private final Connection connection;
+        private final Thread owner = Thread.currentThread();
+        // set by shutdown() while the owner still runs, the owner closes it on its next call
+        private volatile boolean retired = false;
+        private final Map<String, PreparedStatement> statements = newStatementCache();
+        // prepared with RETURN_GENERATED_KEYS, kept apart so the same SQL text gets both kinds
+        private final Map<String, PreparedStatement> insertStatements = newStatementCache();
+
+        PooledConnection(String url, Connection connection) {
+            this.url = url;
+            this.connection = connection;
+        }
+
+        void close() throws SQLException {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            for (PreparedStatement statement : insertStatements.values()) {
+                closeQuietly(statement);
+            }
+            insertStatements.clear();
+            connection.close();
+        }
+    }
+
+    /**
+     * A statement cache that closes and drops the least recently used statement beyond {@link #STATEMENT_CACHE_SIZE}.
+     */
+    private static Map<String, PreparedStatement> newStatementCache() {
+        return new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > STATEMENT_CACHE_SIZE) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
     //Connect to DB
     public static void dbConnect() throws SQLException, ClassNotFoundException {
+        getConnection();
+    }
+
+    /**
+     * The connection of the calling thread, opened on first use.
+     */
+    public static Connection getConnection() throws SQLException, ClassNotFoundException {
+        return pooledConnection().connection;
+    }
+
+    private static PooledConnection pooledConnection() throws SQLException, ClassNotFoundException {
+        PooledConnection pooled = connections.get();
+        if (pooled != null && pooled.url.equals(connStr) && !pooled.connection.isClosed()
+                && (!pooled.retired || !pooled.connection.getAutoCommit())) {
+            // a retired connection is only kept until its open transaction ends
+            return pooled;
+        }
+        if (pooled != null) {
+            dbDisconnect();
+        }
+        loadDriver();
+        //Establish the Sqlite Connection using Connection String
+        final String url = connStr;
+        final Connection connection;
+        try {
+            connection = DriverManager.getConnection(url);
+        } catch (SQLException e) {
+            System.out.println("Connection Failed! Check output console" + e);
+            e.printStackTrace();
+            throw e;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("PRAGMA synchronous=" + synchronous);
+            stmt.execute("PRAGMA cache_size=" + cacheSize);
+            stmt.execute("PRAGMA mmap_size=" + mmapSize);
+        }
+        pooled = new PooledConnection(url, connection);
+        connections.set(pooled);
+        openConnections.add(pooled);
+        return pooled;
+    }
+
+    private static void loadDriver() throws ClassNotFoundException {
+        if (driverLoaded) {
+            return;
+        }
         //Setting Sqlite JDBC Driver
         try {
             Class.forName(JDBC_DRIVER);
+            driverLoaded = true;
         } catch (ClassNotFoundException e) {
             System.out.println("Where is your Sqlite JDBC Driver?");
             e.printStackTrace();
             throw e;
         }
+    }
 
-        System.out.println("Sqlite JDBC Driver Registered!");
+    //Close the connection of the calling thread
+    public static void dbDisconnect() throws SQLException {
+        final PooledConnection pooled = connections.get();
+        connections.remove();
+        if (pooled != null) {
+            openConnections.remove(pooled);
+            pooled.close();
+        }
+    }
 
-        //Establish the Sqlite Connection using Connection String
-        try {
-            conn = DriverManager.getConnection(connStr);
-        } catch (SQLException e) {
-            System.out.println("Connection Failed! Check output console" + e);
-            e.printStackTrace();
-            throw e;
+    /**
+     * Closes the connections of all threads, call once on application shutdown after stopping the threads
+     * that use the database. Connections of threads that still run are not closed under them: they are
+     * retired, and the owning thread closes its connection and opens a new one on its next call.
+     */
+    public static void shutdown() {
+        for (PooledConnection pooled : openConnections) {
+            if (pooled.owner != Thread.currentThread() && pooled.owner.isAlive()) {
+                pooled.retired = true;
+                continue;
+            }
+            openConnections.remove(pooled);
+            try {
+                pooled.close();
+            } catch (SQLException e) {
+                System.out.println("Problem occurred while closing connection : " + e);
+            }
         }
+        connections.remove();
     }
 
-    //Close Connection
-    public static void dbDisconnect() throws SQLException {
+    /**
+     * Work that runs inside one transaction.
+     */
+    public interface Transaction<T> {
+        T run() throws SQLException, ClassNotFoundException;
+    }
+
+    /**
+     * Runs the work in one transaction on the calling thread's connection, committed at the end
+     * and rolled back on any exception. Nested calls join the outer transaction.
+     */
+    public static <T> T inTransaction(Transaction<T> work) throws SQLException, ClassNotFoundException {
+        final Connection connection = getConnection();
+        if (!connection.getAutoCommit()) {
+            return work.run();
+        }
+        connection.setAutoCommit(false);
         try {
-            if (conn != null && !conn.isClosed()) {
-                conn.close();
+            final T result = work.run();
+            connection.commit();
+            return result;
+        } catch (SQLException | ClassNotFoundException | RuntimeException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                System.out.println("Problem occurred at rollback operation : " + rollbackError);
             }
-        } catch (Exception e){
             throw e;
+        } finally {
+            connection.setAutoCommit(true);
         }
     }
 
-    //DB Execute Query Operation
-    public static ResultSet dbExecuteQuery(String queryStmt) throws SQLException, ClassNotFoundException {
-        //Declare statement, resultSet and CachedResultSet as null
-        Statement stmt = null;
-        ResultSet resultSet = null;
-        CachedRowSetImpl crs = null;
-        try {
-            //Connect to DB (Establish Sqlite Connection)
-            dbConnect();
-            System.out.println("Select statement: " + queryStmt + "\n");
-
-            //Create statement
-            stmt = conn.createStatement();
+    /**
+     * Receives the rows of a query one at a time, the ResultSet is positioned on the current row.
+     */
+    public interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
 
-            //Execute select (query) operation
-            resultSet = stmt.executeQuery(queryStmt);
+    //DB Execute Query Operation
+    /**
+     * Streams the rows of the query to the handler without copying them, the ResultSet is closed afterwards.
+     */
+    public static void dbExecuteQuery(String queryStmt, RowHandler handler) throws SQLException, ClassNotFoundException {
+        executePreparedStatementQuery(createPreparedStatement(queryStmt), handler);
+    }
 
-            //CachedRowSet Implementation
-            //In order to prevent "java.sql.SQLRecoverableException: Closed Connection: next" error
-            //We are using CachedRowSet
-            crs = new CachedRowSetImpl();
-            crs.populate(resultSet);
+    public static void executePreparedStatementQuery(PreparedStatement preparedStatement, RowHandler handler) throws SQLException {
+        final long start = Metrics.start();
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                handler.handle(resultSet);
+            }
         } catch (SQLException e) {
             System.out.println("Problem occurred at executeQuery operation : " + e);
             throw e;
         } finally {
-            if (resultSet != null) {
-                //Close resultSet
-                resultSet.close();
-            }
-            if (stmt != null) {
-                //Close Statement
-                stmt.close();
-            }
-            //Close connection
-            dbDisconnect();
+            Metrics.stop(Metrics.DB_CALL, start);
         }
-        //Return CachedRowSet
-        return crs;
     }
 
     //DB Execute Update (For Update/Insert/Delete) Operation
     public static void dbExecuteUpdate(String sqlStmt) throws SQLException, ClassNotFoundException {
-        //Declare statement as null
-        Statement stmt = null;
-        try {
-            //Connect to DB (Establish Sqlite Connection)
-            dbConnect();
-            //Create Statement
-            stmt = conn.createStatement();
+        final long start = Metrics.start();
+        try (Statement stmt = getConnection().createStatement()) {
             //Run executeUpdate operation with given sql statement
             stmt.executeUpdate(sqlStmt);
         } catch (SQLException e) {
             System.out.println("Problem occurred at executeUpdate operation : " + e);
             throw e;
         } finally {
-            if (stmt != null) {
-                //Close statement
-                stmt.close();
-            }
-            //Close connection
-            dbDisconnect();
+            Metrics.stop(Metrics.DB_CALL, start);
         }
     }
 
+    /**
+     * Returns the cached statement for this SQL text on the calling thread's connection,
+     * with its parameters cleared. Do not close it.
+     */
     public static PreparedStatement createPreparedStatement(String sql) throws ClassNotFoundException, SQLException {
-        PreparedStatement stmt = null;
-        try {
-            //Connect to DB (Establish Sqlite Connection)
-            dbConnect();
-            //Create Statement
-            stmt = conn.prepareStatement(sql);
-            //Run executeUpdate operation with given sql statement
+        final PooledConnection pooled = pooledConnection();
+        return cachedStatement(pooled, pooled.statements, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Like {@link #createPreparedStatement(String)}, for inserts whose generated id is read with
+     * {@link #executePreparedStatementInsert(PreparedStatement)}.
+     */
+    public static PreparedStatement createInsertStatement(String sql) throws ClassNotFoundException, SQLException {
+        final PooledConnection pooled = pooledConnection();
+        return cachedStatement(pooled, pooled.insertStatements, sql, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    private static PreparedStatement cachedStatement(PooledConnection pooled, Map<String, PreparedStatement> cache,
+                                                     String sql, int autoGeneratedKeys) throws SQLException {
+        PreparedStatement stmt = cache.get(sql);
+        if (stmt != null) {
+            stmt.clearParameters();
             return stmt;
+        }
+        try {
+            stmt = pooled.connection.prepareStatement(sql, autoGeneratedKeys);
+        } catch (SQLException e) {
+            System.out.println("Problem occurred at prepareStatement operation : " + e);
+            throw e;
+        }
+        cache.put(sql, stmt);
+        return stmt;
+    }
+
+    /**
+     * Runs an insert and returns the id the database generated for the new row.
+     */
+    public static int executePreparedStatementInsert(PreparedStatement preparedStatement) throws SQLException {
+        final long start = Metrics.start();
+        try {
+            preparedStatement.executeUpdate();
+            try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
+                if (keys.next()) {
+                    return keys.getInt(1);
+                }
+            }
         } catch (SQLException e) {
             System.out.println("Problem occurred at executeUpdate operation : " + e);
             throw e;
+        } finally {
+            Metrics.stop(Metrics.DB_CALL, start);
         }
+        throw new IllegalStateException("Error while inserting, no id was generated");
     }
 
     public static void executePreparedStatementUpdate(PreparedStatement preparedStatement) throws SQLException {
+        final long start = Metrics.start();
         try {
             preparedStatement.executeUpdate();
         } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        finally {
-            if (preparedStatement != null) {
-                //Close statement
-                preparedStatement.close();
-            }
-            //Close connection
-            dbDisconnect();
+            System.out.println("Problem occurred at executeUpdate operation : " + e);
+            throw e;
+        } finally {
+            Metrics.stop(Metrics.DB_CALL, start);
         }
     }
 
     public static ResultSet executePreparedStatementQuery(PreparedStatement preparedStatement) throws SQLException {
+        final long start = Metrics.start();
         try {
             return preparedStatement.executeQuery();
         } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        finally {
-            if (preparedStatement != null) {
-                //Close statement
-                preparedStatement.close();
-            }
-            //Close connection
-            dbDisconnect();
+            System.out.println("Problem occurred at executeQuery operation : " + e);
+            throw e;
+        } finally {
+            Metrics.stop(Metrics.DB_CALL, start);
         }
-        return null;
     }
 
-
-}
\ No newline at end of file
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.out.println("Problem occurred while closing statement : " + e);
+        }
+    }
+}
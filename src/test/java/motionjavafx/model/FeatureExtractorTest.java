@@ -0,0 +1,164 @@
+package motionjavafx.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FeatureExtractorTest {
+
+    /**
+     * A right hand in its own palm frame: fingers along z, thumb towards x, finger f fanned out by
+     * (2 - f) * spread and bent by curls[f] evenly over its three joints.
+     */
+    static HandSkeleton createHand(float[] curls, float spread) {
+        final HandSkeleton skeleton = new HandSkeleton();
+        skeleton.setRightHand(true);
+        skeleton.setPoint(HandSkeleton.WRIST, 0, 0, -40);
+        skeleton.setPoint(HandSkeleton.PALM, 0, 0, 20);
+        for (int f = 0; f < HandSkeleton.FINGER_COUNT; f++) {
+            final double heading = (2 - f) * spread;
+            float x = (2 - f) * 18;
+            float y = 0;
+            float z = 10;
+            for (int j = 0; j < HandSkeleton.JOINTS_PER_FINGER; j++) {
+                skeleton.setPoint(HandSkeleton.jointIndex(f, j), x, y, z);
+                final double pitch = j * curls[f] / 3;
+                x += (float) (Math.sin(heading) * Math.cos(pitch) * 25);
+                y -= (float) (Math.sin(pitch) * 25);
+                z += (float) (Math.cos(heading) * Math.cos(pitch) * 25);
+            }
+        }
+        return skeleton;
+    }
+
+    /**
+     * Rotates every point by angle around axis and moves it by offset.
+     */
+    private static HandSkeleton move(HandSkeleton hand, double[] axis, double angle, float[] offset) {
+        final double length = Math.sqrt(axis[0] * axis[0] + axis[1] * axis[1] + axis[2] * axis[2]);
+        final double kx = axis[0] / length, ky = axis[1] / length, kz = axis[2] / length;
+        final double cos = Math.cos(angle), sin = Math.sin(angle);
+        final HandSkeleton moved = new HandSkeleton();
+        moved.copyFrom(hand);
+        for (int p = 0; p < HandSkeleton.POINT_COUNT; p++) {
+            final double x = hand.getX(p), y = hand.getY(p), z = hand.getZ(p);
+            final double dot = kx * x + ky * y + kz * z;
+            final double cx = ky * z - kz * y, cy = kz * x - kx * z, cz = kx * y - ky * x;
+            moved.setPoint(p,
+                    (float) (x * cos + cx * sin + kx * dot * (1 - cos)) + offset[0],
+                    (float) (y * cos + cy * sin + ky * dot * (1 - cos)) + offset[1],
+                    (float) (z * cos + cz * sin + kz * dot * (1 - cos)) + offset[2]);
+        }
+        return moved;
+    }
+
+    private static FeatureVector extract(HandSkeleton hand) {
+        final FeatureVector features = new FeatureVector();
+        new FeatureExtractor().extract(hand, features);
+        return features;
+    }
+
+    private static void assertClose(FeatureVector expected, FeatureVector actual) {
+        assertEquals(expected.getMask(), actual.getMask());
+        for (int slot = 0; slot < FeatureVector.LENGTH; slot++) {
+            assertEquals("slot " + slot, expected.get(slot), actual.get(slot), 1e-4f);
+        }
+    }
+
+    @Test
+    public void testMeasuresFlexionSpreadAndElevation() throws Exception {
+        final FeatureVector features = extract(createHand(new float[]{0f, 1.2f, 0.6f, 0f, 0f}, 0.2f));
+
+        assertEquals(FeatureVector.FULL_MASK, features.getMask());
+        assertEquals(0f, features.get(FeatureVector.FTOB_OFFSET), 1e-4f);
+        assertEquals(1.2f, features.get(FeatureVector.FTOB_OFFSET + 1), 1e-4f);
+        assertEquals(0.6f, features.get(FeatureVector.FTOB_OFFSET + 2), 1e-4f);
+        // (0,1), (0,4) and (3,4)
+        assertEquals(0.2f, features.get(FeatureVector.FTOF_OFFSET), 1e-4f);
+        assertEquals(0.8f, features.get(FeatureVector.FTOF_OFFSET + 3), 1e-4f);
+        assertEquals(0.2f, features.get(FeatureVector.FTOF_OFFSET + 9), 1e-4f);
+        assertEquals(-0.2f, features.get(FeatureVector.BTOW_OFFSET), 1e-4f);
+    }
+
+    @Test
+    public void testFeaturesIgnoreHandPlacement() throws Exception {
+        final HandSkeleton hand = createHand(new float[]{0.3f, 1.2f, 0.6f, 0.9f, 0.1f}, 0.15f);
+        final HandSkeleton moved = move(hand, new double[]{1, 2, 3}, 0.7, new float[]{30, 200, -15});
+
+        assertClose(extract(hand), extract(moved));
+    }
+
+    @Test
+    public void testLeftHandIsMirrored() throws Exception {
+        final HandSkeleton right = createHand(new float[]{0.3f, 1.2f, 0.6f, 0.9f, 0.1f}, 0.15f);
+        final HandSkeleton left = new HandSkeleton();
+        left.copyFrom(right);
+        left.setRightHand(false);
+        for (int p = 0; p < HandSkeleton.POINT_COUNT; p++) {
+            left.setPoint(p, -right.getX(p), right.getY(p), right.getZ(p));
+        }
+
+        assertClose(extract(right), extract(move(left, new double[]{0, 1, 0}, 2.5, new float[]{-40, 180, 0})));
+    }
+
+    @Test
+    public void testStoredSkeletonGivesLiveFeatures() throws Exception {
+        final HandSkeleton hand = createHand(new float[]{0.3f, 1.2f, 0.6f, 0.9f, 0.1f}, 0.15f);
+        final HandGesture stored = new HandGesture(hand);
+        final FeatureVector recomputed = new FeatureVector();
+        new FeatureExtractor().extract(stored.getSkeleton(), true, recomputed);
+
+        assertEquals(stored.getFeatures(), recomputed);
+    }
+
+    @Test
+    public void testBoneCentresConvertToJoints() throws Exception {
+        final HandSkeleton hand = createHand(new float[]{0.3f, 1.2f, 0.6f, 0.9f, 0.1f}, 0.15f);
+        final float[] points = hand.getPoints().clone();
+        for (int f = 0; f < HandSkeleton.FINGER_COUNT; f++) {
+            for (int joint = HandSkeleton.METACARPAL; joint < HandSkeleton.TIP; joint++) {
+                final int p = HandSkeleton.jointIndex(f, joint) * 3;
+                for (int axis = 0; axis < 3; axis++) {
+                    points[p + axis] = (points[p + axis] + points[p + 3 + axis]) / 2;
+                }
+            }
+        }
+        HandSkeleton.centresToJoints(points);
+
+        assertArrayEquals(hand.getPoints(), points, 1e-3f);
+    }
+
+    @Test
+    public void testThumbWithoutMetacarpalIsTracked() throws Exception {
+        final HandSkeleton hand = createHand(new float[]{0.6f, 1.2f, 0.6f, 0.9f, 0.1f}, 0.15f);
+        // the device reports the thumb metacarpal with zero length
+        final int base = HandSkeleton.jointIndex(0, HandSkeleton.METACARPAL);
+        final int knuckle = HandSkeleton.jointIndex(0, HandSkeleton.PROXIMAL);
+        hand.setPoint(base, hand.getX(knuckle), hand.getY(knuckle), hand.getZ(knuckle));
+        final FeatureVector features = extract(hand);
+
+        assertEquals(FeatureVector.FULL_MASK, features.getMask());
+        // only the bend at the two finger joints is left, 2 of 3 even steps
+        assertEquals(0.4f, features.get(FeatureVector.FTOB_OFFSET), 1e-4f);
+    }
+
+    @Test
+    public void testUntrackedAndCollapsedFingersAreAbsent() throws Exception {
+        final HandSkeleton hand = createHand(new float[]{0.3f, 1.2f, 0.6f, 0.9f, 0.1f}, 0.15f);
+        hand.setFingerMask(HandSkeleton.ALL_FINGERS & ~(1 << 1));
+        final int ring = HandSkeleton.jointIndex(3, HandSkeleton.INTERMEDIATE);
+        hand.setPoint(ring + 1, hand.getX(ring), hand.getY(ring), hand.getZ(ring));
+        final FeatureVector features = extract(hand);
+
+        // thumb, middle and pinky remain: 3 FTOB, their 3 pairs and BTOW
+        assertEquals(7, features.size());
+        assertTrue(features.isPresent(FeatureVector.FTOB_OFFSET + 2));
+        assertFalse(features.isPresent(FeatureVector.FTOB_OFFSET + 1));
+        assertFalse(features.isPresent(FeatureVector.FTOB_OFFSET + 3));
+        assertTrue(features.isPresent(FeatureVector.FTOF_OFFSET + 3));
+        assertFalse(features.isPresent(FeatureVector.FTOF_OFFSET));
+        assertTrue(features.isPresent(FeatureVector.BTOW_OFFSET));
+        assertEquals(extract(createHand(new float[]{0.3f, 1.2f, 0.6f, 0.9f, 0.1f}, 0.15f)).get(FeatureVector.FTOB_OFFSET + 2),
+                features.get(FeatureVector.FTOB_OFFSET + 2), 0f);
+    }
+}
@@ -2,11 +2,15 @@ package motionjavafx.model;
 
 import javafx.collections.ObservableList;
 import motionjavafx.util.DBUtil;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -15,14 +19,14 @@ import static org.junit.Assert.*;
  */
 public class GestureDAOTest {
 
+    private File database;
     private Gesture gesture;
 
     @Before
     public void setUp() throws Exception {
-        DBUtil.connStr = "jdbc:sqlite:/home/lena/programming/LeapMotionDB/dbTest";
-        DBUtil.dbExecuteUpdate("delete from angle");
-        DBUtil.dbExecuteUpdate("delete from handGesture");
-        DBUtil.dbExecuteUpdate("delete from gesture");
+        database = File.createTempFile("gestures", ".db");
+        DBUtil.connStr = "jdbc:sqlite:" + database.getPath();
+        GestureSchema.ensureCurrent();
         final HandGesture handGesture = new HandGesture();
         handGesture.setIsRightHand(true);
         Angle angle = new Angle();
@@ -47,6 +51,151 @@ public class GestureDAOTest {
         GestureDAO.insertGesture(gesture);//, handGesture2)));
     }
 
+    @Test
+    public void testFailedInsertKeepsIds() throws Exception {
+        DBUtil.dbExecuteUpdate("CREATE TRIGGER rejectHand BEFORE INSERT ON handgesture WHEN NEW.mask = 1 "
+                + "BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+        final HandGesture accepted = new HandGesture();
+        accepted.getFeatures().set(0, 1f);
+        accepted.getFeatures().set(1, 1f);
+        final HandGesture rejected = new HandGesture();
+        rejected.getFeatures().set(0, 1f);
+        final Gesture first = new Gesture(0, "first", Arrays.asList(accepted));
+        final Gesture second = new Gesture(0, "second", Arrays.asList(rejected));
+
+        try {
+            GestureDAO.insertGestures(Arrays.asList(first, second));
+            fail("the trigger rejects the second gesture");
+        } catch (SQLException e) {
+            assertEquals(0, first.getId());
+            assertEquals(0, accepted.getId());
+            assertEquals(1, GestureDAO.getAllGestures().size());
+        }
+    }
+
+    @Test
+    public void testHandsKeepTheirSample() throws Exception {
+        final HandGesture first = new HandGesture();
+        first.getFeatures().set(0, 1f);
+        final HandGesture second = new HandGesture();
+        second.getFeatures().set(0, 2f);
+        second.setSample(1);
+        GestureDAO.insertGesture(new Gesture(0, "samples", Arrays.asList(first, second)));
+
+        final Gesture loaded = GestureDAO.getAllGestures().get(1);
+        assertEquals(2, loaded.getSamples().size());
+        assertEquals(1, loaded.getHandGestures().get(1).getSample());
+    }
+
+    @Test
+    public void testMotionTemplateKeepsFrameMasks() throws Exception {
+        final MotionTemplate.Builder builder = new MotionTemplate.Builder();
+        final FeatureVector features = new FeatureVector();
+        features.set(0, 0.5f);
+        builder.add(features);
+        features.set(3, 1.5f);
+        builder.add(features);
+        GestureDAO.insertMotionTemplate(builder.build("wave", true));
+
+        final MotionTemplate loaded = GestureDAO.getAllMotionTemplates().get(0);
+        assertEquals(2, loaded.getLength());
+        assertArrayEquals(new int[]{1, 9}, loaded.getMasks());
+        assertEquals(1.5f, loaded.get(1, 3), 0f);
+    }
+
+    @Test
+    public void testLegacyRowsWithoutSkeletonAreMaskedOut() throws Exception {
+        DBUtil.dbDisconnect();
+        final File legacy = File.createTempFile("legacy", ".db");
+        DBUtil.connStr = "jdbc:sqlite:" + legacy.getPath();
+        try {
+            DBUtil.dbExecuteUpdate("CREATE TABLE Gesture (id integer primary key, name text)");
+            DBUtil.dbExecuteUpdate("CREATE TABLE HandGesture (Gestureid integer, id integer primary key, "
+                    + "isrighthand smallint, mask integer, features blob, skeleton blob)");
+            DBUtil.dbExecuteUpdate("CREATE TABLE MotionTemplate (id integer primary key, name text, "
+                    + "isrighthand smallint, framecount integer, features blob)");
+            DBUtil.dbExecuteUpdate("CREATE TABLE SchemaVersion (version integer)");
+            DBUtil.dbExecuteUpdate("INSERT INTO SchemaVersion (version) values (3)");
+            DBUtil.dbExecuteUpdate("INSERT INTO Gesture (id, name) values (1, 'old')");
+            // two frames of a right hand, stored one after the other
+            for (int frame = 0; frame < 2; frame++) {
+                DBUtil.dbExecuteUpdate("INSERT INTO HandGesture (Gestureid, isrighthand, mask, features) "
+                        + "values (1, 1, " + FeatureVector.FULL_MASK + ", zeroblob(" + FeatureVector.LENGTH * 4 + "))");
+            }
+            DBUtil.dbExecuteUpdate("INSERT INTO MotionTemplate (name, isrighthand, framecount, features) "
+                    + "values ('wave', 1, 2, zeroblob(" + 2 * FeatureVector.LENGTH * 4 + "))");
+            GestureSchema.ensureCurrent();
+
+            final List<HandGesture> hands = GestureDAO.getAllGestures().get(0).getHandGestures();
+            assertEquals(0, hands.get(0).getFeatures().getMask());
+            assertEquals(0, hands.get(0).getSample());
+            assertEquals(1, hands.get(1).getSample());
+            assertArrayEquals(new int[]{0, 0}, GestureDAO.getAllMotionTemplates().get(0).getMasks());
+            final String notice = GestureSchema.takeMigrationNotice();
+            assertTrue(notice, notice.startsWith("2 hand gestures without skeleton and 1 motion templates"));
+            assertNull(GestureSchema.takeMigrationNotice());
+        } finally {
+            DBUtil.dbDisconnect();
+            Files.deleteIfExists(legacy.toPath());
+        }
+    }
+
+    @Test
+    public void testAngleRowsArePackedIntoFeatures() throws Exception {
+        DBUtil.dbDisconnect();
+        final File legacy = File.createTempFile("angles", ".db");
+        DBUtil.connStr = "jdbc:sqlite:" + legacy.getPath();
+        try {
+            DBUtil.dbExecuteUpdate("CREATE TABLE Gesture (id integer primary key, name text)");
+            DBUtil.dbExecuteUpdate("CREATE TABLE HandGesture (Gestureid integer, id integer primary key, isrighthand smallint)");
+            DBUtil.dbExecuteUpdate("CREATE TABLE Angle (id integer primary key, handgestureid integer, "
+                    + "angletype integer, value real)");
+            DBUtil.dbExecuteUpdate("INSERT INTO Gesture (id, name) values (1, 'old')");
+            DBUtil.dbExecuteUpdate("INSERT INTO HandGesture (Gestureid, id, isrighthand) values (1, 1, 1)");
+            DBUtil.dbExecuteUpdate("INSERT INTO HandGesture (Gestureid, id, isrighthand) values (1, 2, 0)");
+            // the rows of the two hands interleaved, every type in stored order
+            DBUtil.dbExecuteUpdate("INSERT INTO Angle (handgestureid, angletype, value) values (1, 2, 0.1)");
+            DBUtil.dbExecuteUpdate("INSERT INTO Angle (handgestureid, angletype, value) values (2, 2, 0.3)");
+            DBUtil.dbExecuteUpdate("INSERT INTO Angle (handgestureid, angletype, value) values (1, 1, 0.5)");
+            DBUtil.dbExecuteUpdate("INSERT INTO Angle (handgestureid, angletype, value) values (1, 2, 0.2)");
+            DBUtil.dbExecuteUpdate("INSERT INTO Angle (handgestureid, angletype, value) values (1, 3, 0.9)");
+            GestureSchema.ensureCurrent();
+
+            final List<HandGesture> hands = GestureDAO.getAllGestures().get(0).getHandGestures();
+            final float[] right = new float[FeatureVector.LENGTH];
+            right[FeatureVector.FTOB_OFFSET] = 0.1f;
+            right[FeatureVector.FTOB_OFFSET + 1] = 0.2f;
+            right[FeatureVector.FTOF_OFFSET] = 0.5f;
+            right[FeatureVector.BTOW_OFFSET] = 0.9f;
+            final float[] left = new float[FeatureVector.LENGTH];
+            left[FeatureVector.FTOB_OFFSET] = 0.3f;
+            assertTrue(hands.get(0).isRightHand());
+            assertArrayEquals(right, hands.get(0).getFeatures().getValues(), 0f);
+            assertArrayEquals(left, hands.get(1).getFeatures().getValues(), 0f);
+            // device origin angles without a skeleton cannot be converted to palm frame features
+            assertEquals(0, hands.get(0).getFeatures().getMask());
+            assertEquals(0, hands.get(1).getFeatures().getMask());
+            assertEquals(0, hands.get(1).getSample());
+            final int[] angleTables = {-1};
+            DBUtil.dbExecuteQuery("SELECT count(*) FROM sqlite_master WHERE lower(name) = 'angle'",
+                    rs -> angleTables[0] = rs.getInt(1));
+            assertEquals(0, angleTables[0]);
+            final String notice = GestureSchema.takeMigrationNotice();
+            assertTrue(notice, notice.startsWith("2 hand gestures without skeleton and 0 motion templates"));
+        } finally {
+            DBUtil.dbDisconnect();
+            Files.deleteIfExists(legacy.toPath());
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DBUtil.dbDisconnect();
+        Files.deleteIfExists(database.toPath());
+        Files.deleteIfExists(new File(database.getPath() + "-wal").toPath());
+        Files.deleteIfExists(new File(database.getPath() + "-shm").toPath());
+    }
+
 
     @Test
     public void testGetAllGestures() throws Exception {
@@ -0,0 +1,98 @@
+package motionjavafx.model;
+
+import motionjavafx.util.DBUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GestureRepositoryTest {
+
+    private File database;
+    private GestureRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        database = File.createTempFile("gestures", ".db");
+        DBUtil.connStr = "jdbc:sqlite:" + database.getPath();
+        GestureSchema.ensureCurrent();
+        repository = GestureRepository.open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DBUtil.dbDisconnect();
+        Files.deleteIfExists(database.toPath());
+        Files.deleteIfExists(new File(database.getPath() + "-wal").toPath());
+        Files.deleteIfExists(new File(database.getPath() + "-shm").toPath());
+    }
+
+    private static Gesture createGesture(String name) {
+        final HandGesture handGesture = new HandGesture();
+        handGesture.setIsRightHand(true);
+        handGesture.getFeatures().set(FeatureVector.BTOW_OFFSET, 1.5f);
+        return new Gesture(0, name, new ArrayList<>(Arrays.asList(handGesture)));
+    }
+
+    @Test
+    public void testAddPublishesSnapshot() throws Exception {
+        final List<GestureRepository.Snapshot> published = new ArrayList<>();
+        repository.addListener(published::add);
+
+        repository.add(createGesture("a"));
+
+        assertEquals(1, published.size());
+        assertEquals(1, repository.getSnapshot().getGestures().size());
+        assertEquals(1, repository.getSnapshot().getVersion());
+        assertFalse(repository.reconcile());
+    }
+
+    @Test
+    public void testReconcilePicksUpExternalChanges() throws Exception {
+        final Gesture kept = createGesture("kept");
+        repository.add(kept);
+        final Gesture removed = createGesture("removed");
+        repository.add(removed);
+        final GestureRepository.Snapshot before = repository.getSnapshot();
+
+        GestureDAO.insertGesture(createGesture("external"));
+        GestureDAO.deleteGesture(removed.getId());
+        assertTrue(repository.reconcile());
+
+        final List<Gesture> gestures = repository.getSnapshot().getGestures();
+        assertEquals(2, gestures.size());
+        assertSame(kept, gestures.get(0));
+        assertEquals("external", gestures.get(1).getName());
+        assertEquals(2, before.getGestures().size());
+    }
+
+    @Test
+    public void testReconcilePicksUpExternalFeatureUpdates() throws Exception {
+        final Gesture gesture = createGesture("a");
+        repository.add(gesture);
+
+        DBUtil.dbExecuteUpdate("UPDATE handgesture SET mask = 0");
+        assertTrue(repository.reconcile());
+
+        final Gesture reloaded = repository.getSnapshot().getGestures().get(0);
+        assertNotSame(gesture, reloaded);
+        assertEquals(0, reloaded.getHandGestures().get(0).getFeatures().getMask());
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        final Gesture gesture = createGesture("a");
+        repository.add(gesture);
+        repository.delete(gesture);
+
+        assertTrue(repository.getSnapshot().getGestures().isEmpty());
+        assertNull(GestureDAO.getGesture(gesture.getId()));
+    }
+}
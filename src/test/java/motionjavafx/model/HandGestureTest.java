@@ -0,0 +1,66 @@
+package motionjavafx.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HandGestureTest {
+
+    static HandSkeleton createSkeleton(float spread) {
+        final HandSkeleton skeleton = new HandSkeleton();
+        skeleton.setRightHand(true);
+        for (int f = 0; f < HandSkeleton.FINGER_COUNT; f++) {
+            for (int j = 0; j < HandSkeleton.JOINTS_PER_FINGER; j++) {
+                skeleton.setPoint(HandSkeleton.jointIndex(f, j), (f - 2) * spread, 150 + j * 20, -j * 10 + f);
+            }
+        }
+        skeleton.setPoint(HandSkeleton.PALM, 0, 150, 0);
+        skeleton.setPoint(HandSkeleton.WRIST, 0, 120, 40);
+        return skeleton;
+    }
+
+    @Test
+    public void testSkeletonFeaturesUseFixedLayout() throws Exception {
+        final HandSkeleton skeleton = createSkeleton(20);
+        final HandGesture handGesture = new HandGesture(skeleton);
+        final FeatureVector features = handGesture.getFeatures();
+
+        final FeatureVector expected = new FeatureVector();
+        new FeatureExtractor().extract(skeleton, expected);
+
+        assertEquals(FeatureVector.LENGTH, features.size());
+        assertEquals(expected, features);
+        assertEquals(Angle.AngleType.BTOW, handGesture.getAngles().get(15).getAngleType());
+        assertEquals(Angle.AngleType.FTOF, handGesture.getAngles().get(5).getAngleType());
+    }
+
+    @Test
+    public void testAddedAnglesAreKeyedByType() throws Exception {
+        final HandGesture handGesture = new HandGesture();
+        Angle angle = new Angle();
+        angle.setAngleType(Angle.AngleType.BTOW);
+        angle.setValue(3.123f);
+        handGesture.getAngles().add(angle);
+        angle = new Angle();
+        angle.setAngleType(Angle.AngleType.FTOF);
+        angle.setValue(6.3245f);
+        handGesture.getAngles().add(angle);
+
+        assertEquals(2, handGesture.getAngles().size());
+        assertEquals(6.3245f, handGesture.getFeatures().get(FeatureVector.FTOF_OFFSET), 0f);
+        assertEquals(3.123f, handGesture.getFeatures().get(FeatureVector.BTOW_OFFSET), 0f);
+        assertEquals(Angle.AngleType.FTOF, handGesture.getAngles().get(0).getAngleType());
+        assertEquals(3.123f, handGesture.getAngles().get(1).getValue(), 0f);
+    }
+
+    @Test
+    public void testSquaredDistanceSkipsAbsentSlots() throws Exception {
+        final FeatureVector full = new HandGesture(createSkeleton(20)).getFeatures();
+        final FeatureVector partial = new FeatureVector();
+        partial.set(FeatureVector.BTOW_OFFSET, full.get(FeatureVector.BTOW_OFFSET) + 0.5f);
+
+        // one of 16 slots compared
+        assertEquals(0.25 * FeatureVector.LENGTH, full.squaredDistance(partial), 1e-6);
+        assertEquals(0.0, full.squaredDistance(full), 0.0);
+    }
+}
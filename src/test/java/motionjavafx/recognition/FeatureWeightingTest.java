@@ -0,0 +1,94 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.FeatureVector;
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FeatureWeightingTest {
+    private static final int NOISY_SLOT = FeatureVector.FTOF_OFFSET;
+
+    private final Random random = new Random(3);
+
+    private HandGesture sample(float[] center, float noise, float noisySlotNoise) {
+        final HandGesture hand = new HandGesture();
+        hand.setIsRightHand(true);
+        for (int i = 0; i < FeatureVector.LENGTH; i++) {
+            final float spread = i == NOISY_SLOT ? noisySlotNoise : noise;
+            hand.getFeatures().set(i, center[i] + (float) random.nextGaussian() * spread);
+        }
+        return hand;
+    }
+
+    /**
+     * Gestures that only differ slightly in every slot, with one slot that is mostly noise.
+     */
+    private List<Gesture> library(List<float[]> centers, int samples) {
+        final List<Gesture> library = new ArrayList<>();
+        for (int g = 0; g < centers.size(); g++) {
+            final List<HandGesture> hands = new ArrayList<>();
+            for (int s = 0; s < samples; s++) {
+                hands.add(sample(centers.get(g), 0.02f, 0.5f));
+            }
+            library.add(new Gesture(g, "gesture" + g, hands));
+        }
+        return library;
+    }
+
+    private List<float[]> centers(int count) {
+        final List<float[]> centers = new ArrayList<>();
+        for (int g = 0; g < count; g++) {
+            final float[] center = new float[FeatureVector.LENGTH];
+            for (int i = 0; i < center.length; i++) {
+                center[i] = 1f + random.nextFloat() * 0.3f;
+            }
+            centers.add(center);
+        }
+        return centers;
+    }
+
+    @Test
+    public void testSingleSamplesAreUnweighted() throws Exception {
+        final List<Gesture> library = library(centers(10), 1);
+        assertArrayEquals(FeatureWeighting.unitScales(), FeatureWeighting.learnScales(library), 0f);
+    }
+
+    @Test
+    public void testNoisySlotCountsLess() throws Exception {
+        final float[] scales = FeatureWeighting.learnScales(library(centers(10), 4));
+        double meanWeight = 0;
+        for (int i = 0; i < scales.length; i++) {
+            meanWeight += scales[i] * scales[i];
+            if (i != NOISY_SLOT) {
+                assertTrue(scales[NOISY_SLOT] < scales[i]);
+            }
+        }
+        assertEquals(1, meanWeight / scales.length, 1e-4);
+    }
+
+    @Test
+    public void testWeightedMatchingIsMoreAccurate() throws Exception {
+        final List<float[]> centers = centers(30);
+        final List<Gesture> library = library(centers, 3);
+        final GestureIndex.Searcher weighted = GestureIndex.build(library).newSearcher();
+        final GestureIndex.Searcher unweighted = GestureIndex.build(library, FeatureWeighting.unitScales()).newSearcher();
+        int weightedHits = 0;
+        int unweightedHits = 0;
+        for (int q = 0; q < 300; q++) {
+            final int expected = q % centers.size();
+            final Gesture live = new Gesture(-1, null, new ArrayList<>(Arrays.asList(
+                    sample(centers.get(expected), 0.02f, 0.5f))));
+            weightedHits += weighted.best(live).getGesture().getId() == expected ? 1 : 0;
+            unweightedHits += unweighted.best(live).getGesture().getId() == expected ? 1 : 0;
+        }
+        assertTrue(weightedHits > unweightedHits);
+        assertTrue(weightedHits > 270);
+    }
+}
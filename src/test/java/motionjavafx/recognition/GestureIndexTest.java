@@ -0,0 +1,212 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.FeatureVector;
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GestureIndexTest {
+
+    private final Random random = new Random(42);
+    private List<Gesture> library;
+
+    static HandGesture randomHand(Random random, boolean rightHand, boolean partial) {
+        final HandGesture handGesture = new HandGesture();
+        handGesture.setIsRightHand(rightHand);
+        for (int i = 0; i < FeatureVector.LENGTH; i++) {
+            if (!partial || random.nextBoolean()) {
+                handGesture.getFeatures().set(i, random.nextFloat() * 3f);
+            }
+        }
+        return handGesture;
+    }
+
+    static List<Gesture> randomLibrary(Random random, int size) {
+        final List<Gesture> library = new ArrayList<>();
+        for (int g = 0; g < size; g++) {
+            final List<HandGesture> hands = new ArrayList<>();
+            final int shape = random.nextInt(4);
+            if (shape != 1) {
+                hands.add(randomHand(random, true, g % 7 == 0));
+            }
+            if (shape != 0) {
+                hands.add(randomHand(random, false, false));
+            }
+            if (shape == 3) {
+                hands.add(randomHand(random, true, false));
+            }
+            library.add(new Gesture(g, "gesture" + g, hands));
+        }
+        return library;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        library = randomLibrary(random, 300);
+    }
+
+    @Test
+    public void testBestMatchesLinearScan() throws Exception {
+        final GestureIndex index = GestureIndex.build(library);
+        final GestureIndex.Searcher searcher = index.newSearcher();
+        for (int q = 0; q < 200; q++) {
+            final Gesture live = new Gesture();
+            live.getHandGestures().add(randomHand(random, q % 2 == 0, false));
+            if (q % 3 == 0) {
+                live.getHandGestures().add(randomHand(random, q % 2 != 0, false));
+            }
+            final GestureMatch expected = LinearGestureMatcher.findBestMatch(library, live, index.getScales());
+            final GestureMatch actual = searcher.best(live);
+            assertSame(expected.getGesture(), actual.getGesture());
+            assertEquals(expected.getConfidentiality(), actual.getConfidentiality(), 0.0);
+        }
+    }
+
+    @Test
+    public void testNearestIsRankedLikeLinearScan() throws Exception {
+        final GestureIndex index = GestureIndex.build(library);
+        final GestureIndex.Searcher searcher = index.newSearcher();
+        final Gesture live = new Gesture();
+        live.getHandGestures().add(randomHand(random, true, false));
+
+        final List<Double> expected = new ArrayList<>();
+        for (Gesture gesture : library) {
+            expected.add(LinearGestureMatcher.calcConfidentiality(live, gesture, index.getScales()));
+        }
+        Collections.sort(expected, Collections.reverseOrder());
+
+        final List<GestureMatch> nearest = searcher.nearest(live, 5);
+        assertEquals(5, nearest.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected.get(i), nearest.get(i).getConfidentiality(), 0.0);
+        }
+    }
+
+    @Test
+    public void testUnitScalesScoreLikeUnweightedScan() throws Exception {
+        final GestureIndex.Searcher searcher = GestureIndex.build(library, FeatureWeighting.unitScales()).newSearcher();
+        for (int q = 0; q < 50; q++) {
+            final Gesture live = new Gesture();
+            live.getHandGestures().add(randomHand(random, q % 2 == 0, q % 4 == 0));
+            final GestureMatch expected = LinearGestureMatcher.findBestMatch(library, live);
+            final GestureMatch actual = searcher.best(live);
+            assertSame(expected.getGesture(), actual.getGesture());
+            assertEquals(expected.getConfidentiality(), actual.getConfidentiality(), 0.0);
+        }
+    }
+
+    @Test
+    public void testPrunedBestMatchesFullScanOnClusteredLibrary() throws Exception {
+        // many near duplicates make the bound tight and ties likely
+        final List<Gesture> clustered = new ArrayList<>();
+        for (int g = 0; g < 400; g++) {
+            final Gesture center = library.get(g % 40);
+            final List<HandGesture> hands = new ArrayList<>();
+            for (HandGesture hand : center.getHandGestures()) {
+                final HandGesture copy = new HandGesture();
+                copy.setIsRightHand(hand.isRightHand());
+                for (int i = 0; i < FeatureVector.LENGTH; i++) {
+                    if (hand.getFeatures().isPresent(i)) {
+                        copy.getFeatures().set(i, hand.getFeatures().get(i) + (g < 200 ? 0f : random.nextFloat() * 0.01f));
+                    }
+                }
+                hands.add(copy);
+            }
+            clustered.add(new Gesture(g, "gesture" + g, hands));
+        }
+        final GestureIndex.Searcher searcher = GestureIndex.build(clustered).newSearcher(0);
+        for (int q = 0; q < 200; q++) {
+            final Gesture live = new Gesture();
+            live.getHandGestures().add(randomHand(random, q % 2 == 0, q % 5 == 0));
+            if (q % 3 == 0) {
+                live.getHandGestures().add(randomHand(random, q % 4 == 0, false));
+            }
+            final GestureMatch expected = searcher.nearest(live, 1).get(0);
+            final GestureMatch actual = searcher.best(live);
+            assertSame(expected.getGesture(), actual.getGesture());
+            assertEquals(expected.getConfidentiality(), actual.getConfidentiality(), 0.0);
+        }
+    }
+
+    @Test
+    public void testEmptyLibrary() throws Exception {
+        final Gesture live = new Gesture();
+        live.getHandGestures().add(randomHand(random, true, false));
+        assertNull(GestureIndex.build(Collections.<Gesture>emptyList()).newSearcher().best(live));
+    }
+
+    @Test
+    public void testMappedIndexScoresLikeBuiltIndex() throws Exception {
+        final Path file = Files.createTempFile("gestures", ".idx");
+        try {
+            final GestureIndex built = GestureIndex.build(library);
+            built.write(file);
+            final GestureIndex mapped = GestureIndex.map(file);
+            assertEquals(library.size(), mapped.size());
+            assertEquals(library.get(17).getId(), mapped.getGestures().get(17).getId());
+            assertEquals(library.get(17).getName(), mapped.getGestures().get(17).getName());
+            assertArrayEquals(built.getScales(), mapped.getScales(), 0f);
+
+            final GestureIndex.Searcher expected = built.newSearcher();
+            final GestureIndex.Searcher actual = mapped.newSearcher();
+            for (int q = 0; q < 50; q++) {
+                final Gesture live = new Gesture();
+                live.getHandGestures().add(randomHand(random, q % 2 == 0, q % 5 == 0));
+                final GestureMatch expectedMatch = expected.best(live);
+                final GestureMatch actualMatch = actual.best(live);
+                assertEquals(expectedMatch.getGesture(), actualMatch.getGesture());
+                assertEquals(expectedMatch.getConfidentiality(), actualMatch.getConfidentiality(), 0.0);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testMapRejectsCorruptFiles() throws Exception {
+        final Path file = Files.createTempFile("gestures", ".idx");
+        try {
+            GestureIndex.build(library).write(file);
+            final byte[] bytes = Files.readAllBytes(file);
+
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+            assertMapFails(file);
+
+            final byte[] hugeCount = bytes.clone();
+            ByteBuffer.wrap(hugeCount).order(ByteOrder.LITTLE_ENDIAN).putInt(12, Integer.MAX_VALUE);
+            Files.write(file, hugeCount);
+            assertMapFails(file);
+
+            final byte[] badName = bytes.clone();
+            // name offset of the first table entry, right after the header and the scales
+            ByteBuffer.wrap(badName).order(ByteOrder.LITTLE_ENDIAN).putInt(6 * 4 + FeatureVector.LENGTH * 4 + 4, bytes.length);
+            Files.write(file, badName);
+            assertMapFails(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void assertMapFails(Path file) {
+        try {
+            GestureIndex.map(file);
+            fail("expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.Gesture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class GestureRecognizerTest {
+
+    private final Random random = new Random(7);
+    private ForkJoinPool pool;
+    private List<Gesture> library;
+    private GestureRecognizer recognizer;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ForkJoinPool(4);
+        library = GestureIndexTest.randomLibrary(random, 200);
+        recognizer = new GestureRecognizer(GestureIndex.build(library), pool, 3);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testRecognizeAllKeepsOrderAndRanking() throws Exception {
+        final List<Gesture> queries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final Gesture query = new Gesture();
+            query.setId(i);
+            query.getHandGestures().add(GestureIndexTest.randomHand(random, i % 2 == 0, false));
+            queries.add(query);
+        }
+
+        final List<RecognitionResult> results = recognizer.recognizeAll(queries.stream());
+
+        assertEquals(queries.size(), results.size());
+        for (int i = 0; i < queries.size(); i++) {
+            final RecognitionResult result = results.get(i);
+            assertEquals(i, result.getFrameId());
+            assertEquals(3, result.getMatches().size());
+            final GestureMatch expected = LinearGestureMatcher.findBestMatch(library, queries.get(i),
+                    recognizer.getIndex().getScales());
+            assertEquals(expected.getConfidentiality(), result.getBest().getConfidentiality(), 0.0);
+            assertTrue(result.getMatches().get(0).getConfidentiality() >= result.getMatches().get(2).getConfidentiality());
+        }
+    }
+}
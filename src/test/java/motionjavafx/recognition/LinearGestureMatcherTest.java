@@ -0,0 +1,190 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.FeatureVector;
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LinearGestureMatcherTest {
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void testFingerFailureAddsUpToFailure() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            final HandGesture live = GestureIndexTest.randomHand(random, true, i % 3 == 0);
+            final HandGesture stored = GestureIndexTest.randomHand(random, true, i % 5 == 0);
+            final float[] perFinger = new float[5];
+            LinearGestureMatcher.calcFingerFailure(live.getFeatures(), stored.getFeatures(), perFinger);
+            double sum = 0;
+            for (float failure : perFinger) {
+                assertTrue(failure >= 0);
+                sum += failure;
+            }
+            assertEquals(LinearGestureMatcher.calcFailure(live, stored), sum, 1e-4);
+        }
+    }
+
+    @Test
+    public void testWeightedFingerFailureAddsUpToWeightedFailure() throws Exception {
+        final float[] scales = new float[FeatureVector.LENGTH];
+        for (int slot = 0; slot < scales.length; slot++) {
+            scales[slot] = 0.5f + random.nextFloat() * 2;
+        }
+        for (int i = 0; i < 50; i++) {
+            final HandGesture live = GestureIndexTest.randomHand(random, true, i % 3 == 0);
+            final HandGesture stored = GestureIndexTest.randomHand(random, true, i % 5 == 0);
+            final float[] perFinger = new float[5];
+            LinearGestureMatcher.calcFingerFailure(live.getFeatures(), stored.getFeatures(), scales, perFinger);
+            double sum = 0;
+            for (float failure : perFinger) {
+                sum += failure;
+            }
+            assertEquals(LinearGestureMatcher.calcFailure(live, stored, scales), sum, 1e-3);
+        }
+    }
+
+    @Test
+    public void testClosestHandUsesScales() throws Exception {
+        final HandGesture live = new HandGesture();
+        live.setIsRightHand(true);
+        final HandGesture offFirst = new HandGesture();
+        offFirst.setIsRightHand(true);
+        final HandGesture offSecond = new HandGesture();
+        offSecond.setIsRightHand(true);
+        for (int slot = 0; slot < FeatureVector.LENGTH; slot++) {
+            live.getFeatures().set(slot, 0f);
+            offFirst.getFeatures().set(slot, slot == 0 ? 1f : 0f);
+            offSecond.getFeatures().set(slot, slot == 1 ? 0.5f : 0f);
+        }
+        final Gesture gesture = new Gesture(1, "g", Arrays.asList(offFirst, offSecond));
+        final float[] scales = FeatureWeighting.unitScales();
+        scales[1] = 4f;
+
+        assertSame(offSecond, LinearGestureMatcher.findClosestHand(live, gesture));
+        assertSame(offFirst, LinearGestureMatcher.findClosestHand(live, gesture, scales));
+    }
+
+    @Test
+    public void testClosestHandHasSameHandednessAndLowestFailure() throws Exception {
+        final HandGesture live = GestureIndexTest.randomHand(random, true, false);
+        final HandGesture near = new HandGesture();
+        near.setIsRightHand(true);
+        near.getFeatures().copyFrom(live.getFeatures());
+        final HandGesture left = new HandGesture();
+        left.getFeatures().copyFrom(live.getFeatures());
+        final Gesture gesture = new Gesture(1, "g", Arrays.asList(
+                GestureIndexTest.randomHand(random, true, false), left, near));
+
+        assertSame(near, LinearGestureMatcher.findClosestHand(live, gesture));
+        assertNull(LinearGestureMatcher.findClosestHand(live, new Gesture(2, "h", Arrays.asList(left))));
+    }
+
+    @Test
+    public void testHandWithoutCommonSlotsIsNotCompared() throws Exception {
+        final HandGesture live = new HandGesture();
+        live.setIsRightHand(true);
+        final HandGesture disjoint = new HandGesture();
+        disjoint.setIsRightHand(true);
+        final HandGesture far = new HandGesture();
+        far.setIsRightHand(true);
+        for (int slot = 0; slot < FeatureVector.LENGTH; slot++) {
+            if (slot < FeatureVector.FTOF_OFFSET) {
+                live.getFeatures().set(slot, 0.5f);
+            } else {
+                disjoint.getFeatures().set(slot, 0.5f);
+            }
+            far.getFeatures().set(slot, 2f);
+        }
+        final Gesture gesture = new Gesture(0, "live", Arrays.asList(live));
+        final List<Gesture> library = Arrays.asList(
+                new Gesture(1, "disjoint", Arrays.asList(disjoint)), new Gesture(2, "far", Arrays.asList(far)));
+
+        assertEquals(Double.MAX_VALUE, LinearGestureMatcher.calcFailure(live, disjoint), 0.0);
+        assertEquals("far", LinearGestureMatcher.findBestMatch(library, gesture).getGesture().getName());
+        assertEquals("far", GestureIndex.build(library).newSearcher().best(gesture).getGesture().getName());
+    }
+
+    @Test
+    public void testMissingSlotsDoNotLowerFailure() throws Exception {
+        final HandGesture live = new HandGesture();
+        live.setIsRightHand(true);
+        final HandGesture sparse = new HandGesture();
+        sparse.setIsRightHand(true);
+        final HandGesture full = new HandGesture();
+        full.setIsRightHand(true);
+        for (int slot = 0; slot < FeatureVector.LENGTH; slot++) {
+            live.getFeatures().set(slot, 0.5f);
+            if (slot < 4) {
+                sparse.getFeatures().set(slot, 1.5f);
+            }
+            full.getFeatures().set(slot, 1.4f);
+        }
+        final Gesture gesture = new Gesture(0, "live", Arrays.asList(live));
+        final List<Gesture> library = Arrays.asList(
+                new Gesture(1, "sparse", Arrays.asList(sparse)), new Gesture(2, "full", Arrays.asList(full)));
+
+        assertEquals(FeatureVector.LENGTH, LinearGestureMatcher.calcFailure(live, sparse), 1e-9);
+        assertEquals("full", LinearGestureMatcher.findBestMatch(library, gesture).getGesture().getName());
+        assertEquals("full", GestureIndex.build(library).newSearcher().best(gesture).getGesture().getName());
+    }
+
+    @Test
+    public void testCloserOfTwoSameSideLiveHandsIsScored() throws Exception {
+        final HandGesture stored = GestureIndexTest.randomHand(random, true, false);
+        final HandGesture near = new HandGesture();
+        near.setIsRightHand(true);
+        near.getFeatures().copyFrom(stored.getFeatures());
+        final HandGesture far = GestureIndexTest.randomHand(random, true, false);
+        final List<Gesture> library = Arrays.asList(new Gesture(1, "stored", Arrays.asList(stored)),
+                new Gesture(2, "other", Arrays.asList(GestureIndexTest.randomHand(random, true, false))));
+        final float[] scales = FeatureWeighting.unitScales();
+
+        for (Gesture live : Arrays.asList(new Gesture(0, "farFirst", Arrays.asList(far, near)),
+                new Gesture(0, "nearFirst", Arrays.asList(near, far)))) {
+            final double expected = 100 - LinearGestureMatcher.HAND_COUNT_PENALTY;
+            assertEquals(expected, LinearGestureMatcher.calcConfidentiality(live, library.get(0), scales), 0.0);
+            final GestureMatch match = GestureIndex.build(library, scales).newSearcher().best(live);
+            assertEquals("stored", match.getGesture().getName());
+            assertEquals(expected, match.getConfidentiality(), 0.0);
+        }
+    }
+
+    @Test
+    public void testUnassignedHandsArePenalized() throws Exception {
+        final HandGesture right = GestureIndexTest.randomHand(random, true, false);
+        final HandGesture left = GestureIndexTest.randomHand(random, false, false);
+        final Gesture oneHand = new Gesture(1, "one", Arrays.asList(right));
+        final Gesture twoHands = new Gesture(2, "two", Arrays.asList(right, left));
+        final List<Gesture> library = Arrays.asList(twoHands, oneHand);
+        final Gesture live = new Gesture(0, "live", Arrays.asList(right));
+        final Gesture liveTwice = new Gesture(0, "live", Arrays.asList(right, right));
+
+        assertEquals(100, LinearGestureMatcher.calcConfidentiality(live, oneHand), 0.0);
+        assertEquals(100 - LinearGestureMatcher.HAND_COUNT_PENALTY,
+                LinearGestureMatcher.calcConfidentiality(live, twoHands), 0.0);
+        assertEquals(100 - LinearGestureMatcher.HAND_COUNT_PENALTY,
+                LinearGestureMatcher.calcConfidentiality(liveTwice, oneHand), 0.0);
+        assertSame(oneHand, LinearGestureMatcher.findBestMatch(library, live).getGesture());
+        assertSame(oneHand, GestureIndex.build(library).newSearcher().best(live).getGesture());
+    }
+
+    @Test
+    public void testGesturesWithoutCommonSideAreSkipped() throws Exception {
+        final List<Gesture> library = Arrays.asList(
+                new Gesture(1, "a", Arrays.asList(GestureIndexTest.randomHand(random, true, false))),
+                new Gesture(2, "b", Arrays.asList(GestureIndexTest.randomHand(random, true, false))));
+        final Gesture live = new Gesture(0, "live", Arrays.asList(GestureIndexTest.randomHand(random, false, false)));
+        final GestureIndex.Searcher searcher = GestureIndex.build(library).newSearcher();
+
+        assertNull(LinearGestureMatcher.findBestMatch(library, live));
+        assertNull(searcher.best(live));
+        assertTrue(searcher.nearest(live, 3).isEmpty());
+    }
+}
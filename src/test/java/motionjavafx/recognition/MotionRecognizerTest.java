@@ -0,0 +1,165 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.FeatureVector;
+import motionjavafx.model.MotionTemplate;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MotionRecognizerTest {
+    private static final int BAND = 3;
+
+    private final Random random = new Random(3);
+    private MotionTemplate wave;
+    private List<float[]> live;
+
+    private float[] randomFrame(float base) {
+        final float[] frame = new float[FeatureVector.LENGTH];
+        for (int d = 0; d < frame.length; d++) {
+            frame[d] = base + random.nextFloat() * 0.05f;
+        }
+        return frame;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        final MotionTemplate.Builder builder = new MotionTemplate.Builder();
+        final List<float[]> templateFrames = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final float[] frame = new float[FeatureVector.LENGTH];
+            for (int d = 0; d < frame.length; d++) {
+                frame[d] = (float) Math.sin(i * 0.3 + d);
+            }
+            templateFrames.add(frame);
+            builder.add(vector(frame));
+        }
+        wave = builder.build("wave", true);
+
+        live = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            live.add(randomFrame(2f));
+        }
+        // the template played slightly slower, every fifth frame held twice
+        for (int i = 0; i < templateFrames.size(); i++) {
+            live.add(noisy(templateFrames.get(i)));
+            if (i % 5 == 0) {
+                live.add(noisy(templateFrames.get(i)));
+            }
+        }
+        for (int i = 0; i < 40; i++) {
+            live.add(randomFrame(-2f));
+        }
+    }
+
+    private float[] noisy(float[] frame) {
+        final float[] copy = Arrays.copyOf(frame, frame.length);
+        for (int d = 0; d < copy.length; d++) {
+            copy[d] += (random.nextFloat() - 0.5f) * 0.02f;
+        }
+        return copy;
+    }
+
+    private static FeatureVector vector(float[] values) {
+        final FeatureVector features = new FeatureVector();
+        for (int i = 0; i < values.length; i++) {
+            features.set(i, values[i]);
+        }
+        return features;
+    }
+
+    /**
+     * Textbook banded DTW of every admissible subsequence ending at t.
+     */
+    private double bruteForce(int t) {
+        final int m = wave.getLength();
+        double best = Double.POSITIVE_INFINITY;
+        for (int length = m - BAND; length <= m + BAND; length++) {
+            final int start = t - length + 1;
+            if (start < 0) {
+                continue;
+            }
+            final double[][] dtw = new double[length][m];
+            for (double[] row : dtw) {
+                Arrays.fill(row, Double.POSITIVE_INFINITY);
+            }
+            for (int i = 0; i < length; i++) {
+                for (int j = Math.max(0, i - BAND); j <= Math.min(m - 1, i + BAND); j++) {
+                    double distance = 0;
+                    for (int d = 0; d < FeatureVector.LENGTH; d++) {
+                        final float difference = live.get(start + i)[d] - wave.get(j, d);
+                        distance += (double) difference * difference;
+                    }
+                    double predecessor;
+                    if (i == 0 && j == 0) {
+                        predecessor = 0;
+                    } else {
+                        predecessor = Double.POSITIVE_INFINITY;
+                        if (i > 0) predecessor = Math.min(predecessor, dtw[i - 1][j]);
+                        if (j > 0) predecessor = Math.min(predecessor, dtw[i][j - 1]);
+                        if (i > 0 && j > 0) predecessor = Math.min(predecessor, dtw[i - 1][j - 1]);
+                    }
+                    dtw[i][j] = predecessor + distance;
+                }
+            }
+            best = Math.min(best, dtw[length - 1][m - 1]);
+        }
+        return best / m;
+    }
+
+    @Test
+    public void testFindsWarpedMotionWithExactCost() throws Exception {
+        final double threshold = 0.05;
+        final MotionRecognizer recognizer = new MotionRecognizer(Collections.singletonList(wave), BAND, threshold);
+        MotionMatch first = null;
+        int firstFrame = -1;
+        for (int t = 0; t < live.size() && first == null; t++) {
+            first = recognizer.update(vector(live.get(t)));
+            firstFrame = t;
+            if (first == null) {
+                assertTrue(bruteForce(t) > threshold);
+            }
+        }
+        assertNotNull(first);
+        assertSame(wave, first.getTemplate());
+        assertEquals(bruteForce(firstFrame), first.getCost(), 1e-9);
+    }
+
+    @Test
+    public void testComparesOnlyPresentSlots() throws Exception {
+        final MotionRecognizer recognizer = new MotionRecognizer(Collections.singletonList(wave), BAND, 0.05);
+        // the first three slots were lost for the whole motion and hold garbage
+        final int mask = FeatureVector.FULL_MASK & ~7;
+        MotionMatch match = null;
+        for (int t = 0; t < live.size() && match == null; t++) {
+            final FeatureVector features = new FeatureVector();
+            final float[] values = Arrays.copyOf(live.get(t), FeatureVector.LENGTH);
+            values[0] = values[1] = values[2] = 100f;
+            features.setAll(values, 0, mask);
+            match = recognizer.update(features);
+        }
+        assertNotNull(match);
+        assertSame(wave, match.getTemplate());
+    }
+
+    @Test
+    public void testFramesWithoutCommonSlotsNeverMatch() throws Exception {
+        final float[] frame = new float[FeatureVector.LENGTH];
+        assertEquals(Double.POSITIVE_INFINITY, MotionRecognizer.frameDistance(frame, 0, 1, frame, 0, 2), 0);
+        assertEquals(0, MotionRecognizer.frameDistance(frame, 0, 3, frame, 0, 2), 0);
+    }
+
+    @Test
+    public void testIgnoresUnrelatedMotion() throws Exception {
+        final MotionRecognizer recognizer = new MotionRecognizer(Collections.singletonList(wave), BAND, 0.05);
+        for (int t = 0; t < 40; t++) {
+            assertNull(recognizer.update(vector(live.get(t))));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.FeatureVector;
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PrototypeCompressorTest {
+
+    private final Random random = new Random(11);
+
+    private HandGesture sample(float center, boolean rightHand) {
+        final HandGesture hand = new HandGesture();
+        hand.setIsRightHand(rightHand);
+        for (int i = 0; i < FeatureVector.LENGTH; i++) {
+            hand.getFeatures().set(i, center + (float) random.nextGaussian() * 0.01f);
+        }
+        return hand;
+    }
+
+    @Test
+    public void testMedoidsPickOneSamplePerCluster() throws Exception {
+        final List<List<HandGesture>> samples = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            samples.add(Collections.singletonList(sample(i % 3, true)));
+        }
+
+        final List<List<HandGesture>> medoids = PrototypeCompressor.medoids(samples, 3, FeatureWeighting.unitScales());
+
+        assertEquals(3, medoids.size());
+        final boolean[] seen = new boolean[3];
+        for (List<HandGesture> medoid : medoids) {
+            assertTrue(samples.contains(medoid));
+            seen[Math.round(medoid.get(0).getFeatures().get(0))] = true;
+        }
+        assertTrue(seen[0] && seen[1] && seen[2]);
+    }
+
+    @Test
+    public void testGesturesWithSameNameAreCompressedTogether() throws Exception {
+        final List<Gesture> library = new ArrayList<>();
+        int id = 0;
+        for (int save = 0; save < 4; save++) {
+            final List<HandGesture> hands = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                final HandGesture right = sample(save, true);
+                final HandGesture left = sample(save + 10, false);
+                right.setSample(i);
+                left.setSample(i);
+                // both hands of one sample share id / 2
+                right.setId(id++);
+                left.setId(id++);
+                hands.add(right);
+                hands.add(left);
+            }
+            library.add(new Gesture(10 - save, "a", hands));
+        }
+        library.add(new Gesture(20, "b", new ArrayList<>(Arrays.asList(sample(1, true)))));
+
+        final List<Gesture> compressed = PrototypeCompressor.compress(library, 2, FeatureWeighting.unitScales());
+
+        assertEquals(2, compressed.size());
+        assertEquals(7, compressed.get(0).getId());
+        assertEquals(4, compressed.get(0).getHandGestures().size());
+        final List<List<HandGesture>> prototypes = compressed.get(0).getSamples();
+        assertEquals(2, prototypes.size());
+        for (List<HandGesture> prototype : prototypes) {
+            assertEquals(2, prototype.size());
+            assertNotEquals(prototype.get(0).isRightHand(), prototype.get(1).isRightHand());
+            assertEquals(prototype.get(0).getId() / 2, prototype.get(1).getId() / 2);
+        }
+        assertEquals(1, compressed.get(1).getHandGestures().size());
+        // the library keeps its sample numbers
+        assertEquals(4, library.get(0).getHandGestures().get(9).getSample());
+    }
+
+    @Test
+    public void testIdenticalSamplesGiveOnePrototype() throws Exception {
+        final List<HandGesture> sample = Collections.singletonList(sample(1, true));
+        final List<List<HandGesture>> samples = Arrays.asList(sample, sample, sample, sample);
+        assertEquals(1, PrototypeCompressor.medoids(samples, 3, FeatureWeighting.unitScales()).size());
+    }
+
+    @Test
+    public void testSamplesWithoutCommonSideArePenalized() throws Exception {
+        final List<HandGesture> right = Collections.singletonList(sample(1, true));
+        final List<HandGesture> left = Collections.singletonList(sample(1, false));
+        assertEquals(2 * LinearGestureMatcher.HAND_COUNT_PENALTY,
+                PrototypeCompressor.distance(right, left, FeatureWeighting.unitScales()), 0.0);
+    }
+
+    @Test
+    public void testDistanceIsSymmetric() throws Exception {
+        final List<HandGesture> twoRight = Arrays.asList(sample(1, true), sample(2, true));
+        final List<HandGesture> oneRight = Collections.singletonList(sample(1, true));
+        final float[] scales = FeatureWeighting.unitScales();
+        assertEquals(PrototypeCompressor.distance(twoRight, oneRight, scales),
+                PrototypeCompressor.distance(oneRight, twoRight, scales), 0.0);
+        assertTrue(PrototypeCompressor.distance(twoRight, oneRight, scales) >= LinearGestureMatcher.HAND_COUNT_PENALTY);
+    }
+
+    @Test
+    public void testCacheRecompressesOnlyChangedNames() throws Exception {
+        final List<Gesture> library = new ArrayList<>();
+        library.add(new Gesture(1, "a", new ArrayList<>(Arrays.asList(sample(1, true)))));
+        library.add(new Gesture(2, "b", new ArrayList<>(Arrays.asList(sample(2, true)))));
+        final PrototypeCompressor.Cache cache = new PrototypeCompressor.Cache(2);
+
+        final List<Gesture> first = cache.compress(library, FeatureWeighting.unitScales());
+        final HandGesture added = sample(3, true);
+        added.setSample(1);
+        library.get(1).getHandGestures().add(added);
+        library.add(new Gesture(3, "c", new ArrayList<>(Arrays.asList(sample(4, true)))));
+        final List<Gesture> second = cache.compress(library, FeatureWeighting.unitScales());
+
+        assertEquals(3, second.size());
+        assertSame(first.get(0), second.get(0));
+        assertNotSame(first.get(1), second.get(1));
+        assertEquals(2, second.get(1).getSamples().size());
+        library.remove(0);
+        final List<Gesture> third = cache.compress(library, FeatureWeighting.unitScales());
+        assertEquals(2, third.size());
+        assertSame(second.get(1), third.get(0));
+    }
+}
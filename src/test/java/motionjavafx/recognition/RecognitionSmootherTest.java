@@ -0,0 +1,59 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.Gesture;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RecognitionSmootherTest {
+
+    private final Gesture hello = new Gesture(1, "hello", new ArrayList<>());
+    private final Gesture thanks = new Gesture(2, "thanks", new ArrayList<>());
+    private final List<RecognitionEvent> events = new ArrayList<>();
+    private RecognitionSmoother smoother;
+
+    @Before
+    public void setUp() throws Exception {
+        smoother = new RecognitionSmoother(5, 4, 0.5, 90, 80, events::add);
+    }
+
+    @Test
+    public void testFlickerDoesNotEmit() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            smoother.update(new GestureMatch(i % 2 == 0 ? hello : thanks, 99), i);
+        }
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testStableGestureEmitsOnce() throws Exception {
+        smoother.update(new GestureMatch(hello, 99), 0);
+        smoother.update(new GestureMatch(thanks, 99), 1);
+        for (int i = 2; i < 10; i++) {
+            smoother.update(new GestureMatch(hello, 99), i);
+        }
+        assertEquals(1, events.size());
+        assertSame(hello, events.get(0).getGesture());
+    }
+
+    @Test
+    public void testLowConfidentialityExits() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            smoother.update(new GestureMatch(hello, 99), i);
+        }
+        for (int i = 5; i < 10; i++) {
+            smoother.update(new GestureMatch(hello, -Double.MAX_VALUE), i);
+        }
+        assertEquals(2, events.size());
+        assertNull(events.get(1).getGesture());
+        for (int i = 10; i < 20; i++) {
+            smoother.update(new GestureMatch(thanks, 99), i);
+        }
+        assertEquals(3, events.size());
+        assertSame(thanks, events.get(2).getGesture());
+    }
+}
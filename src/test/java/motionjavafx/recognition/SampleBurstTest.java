@@ -0,0 +1,58 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.Gesture;
+import motionjavafx.model.HandGesture;
+import motionjavafx.model.HandSkeleton;
+import motionjavafx.tracking.TrackingFrame;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SampleBurstTest {
+
+    @Test
+    public void testTakesEveryIntervalthFrameWithHands() throws Exception {
+        final SampleBurst burst = new SampleBurst("a", 3, 2);
+        int frames = 0;
+        while (!burst.add(frame(frames % 4 != 3 ? 1 : 0))) {
+            frames++;
+        }
+        assertEquals(3, burst.getRecorded());
+        assertEquals("a", burst.build().getName());
+        assertEquals(3, burst.build().getHandGestures().size());
+    }
+
+    @Test
+    public void testHandsOfOneFrameShareTheirSample() throws Exception {
+        final SampleBurst burst = new SampleBurst("a", 2, 1);
+        burst.add(frame(2));
+        burst.add(frame(2));
+
+        final Gesture gesture = burst.build();
+        final List<List<HandGesture>> samples = gesture.getSamples();
+        assertEquals(2, samples.size());
+        for (int sample = 0; sample < samples.size(); sample++) {
+            assertEquals(2, samples.get(sample).size());
+            assertEquals(sample, samples.get(sample).get(0).getSample());
+            assertTrue(samples.get(sample).get(0).isRightHand());
+            assertFalse(samples.get(sample).get(1).isRightHand());
+        }
+    }
+
+    /**
+     * A frame with a right hand and, for two hands, a left one.
+     */
+    private static TrackingFrame frame(int hands) {
+        final TrackingFrame frame = new TrackingFrame();
+        for (int h = 0; h < hands; h++) {
+            final HandSkeleton hand = frame.addHand();
+            hand.setRightHand(h == 0);
+            for (int p = 0; p <= HandSkeleton.WRIST; p++) {
+                hand.setPoint(p, p, 2 * p, -p);
+            }
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,82 @@
+package motionjavafx.recognition;
+
+import motionjavafx.model.HandSkeleton;
+import motionjavafx.tracking.TrackingFrame;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StabilityGateTest {
+
+    // 100 mm/s, confidence 0.5, hold 100 ms, refresh 0
+    private final StabilityGate gate = new StabilityGate(100f, 0.5f, 100_000, 0);
+
+    /**
+     * A frame at millis with one right hand whose palm and tips all sit at x.
+     */
+    private static TrackingFrame frame(long millis, float x, float confidence) {
+        final TrackingFrame frame = new TrackingFrame();
+        frame.setTimestamp(millis * 1000);
+        final HandSkeleton hand = frame.addHand();
+        hand.setRightHand(true);
+        hand.setId(1);
+        hand.setConfidence(confidence);
+        for (int f = 0; f < HandSkeleton.FINGER_COUNT; f++) {
+            hand.setPoint(HandSkeleton.tipIndex(f), x + f * 20, 200, 0);
+        }
+        hand.setPoint(HandSkeleton.PALM, x, 150, 0);
+        return frame;
+    }
+
+    @Test
+    public void testStillHandPassesAfterHold() throws Exception {
+        assertFalse(gate.accept(frame(0, 0, 1)));
+        // 0.5 mm in 10 ms is 50 mm/s
+        assertFalse(gate.accept(frame(10, 0.5f, 1)));
+        assertFalse(gate.accept(frame(60, 0.5f, 1)));
+        assertTrue(gate.accept(frame(110, 0.5f, 1)));
+        assertTrue(gate.accept(frame(120, 0.5f, 1)));
+        assertEquals(2, gate.getPassed());
+        assertEquals(3, gate.getHeld());
+    }
+
+    @Test
+    public void testMovingHandIsHeldUntilStillAgain() throws Exception {
+        for (int t = 0; t <= 200; t += 10) {
+            gate.accept(frame(t, 0, 1));
+        }
+        // 5 mm in 10 ms is 500 mm/s
+        assertFalse(gate.accept(frame(210, 5, 1)));
+        assertFalse(gate.accept(frame(220, 5, 1)));
+        assertFalse(gate.accept(frame(300, 5, 1)));
+        assertTrue(gate.accept(frame(320, 5, 1)));
+    }
+
+    @Test
+    public void testLowConfidenceAndEmptyFramesDoNotPass() throws Exception {
+        for (int t = 0; t < 150; t += 10) {
+            assertEquals(t >= 100, gate.accept(frame(t, 0, 1)));
+        }
+        for (int t = 150; t <= 200; t += 10) {
+            assertFalse(gate.accept(frame(t, 0, 0.2f)));
+        }
+        assertFalse(gate.accept(new TrackingFrame()));
+        // the hand is new after an empty frame and has to hold again
+        assertFalse(gate.accept(frame(220, 0, 1)));
+        assertFalse(gate.accept(frame(300, 0, 1)));
+        assertTrue(gate.accept(frame(320, 0, 1)));
+    }
+
+    @Test
+    public void testRefreshLimitsPassingFrames() throws Exception {
+        final StabilityGate limited = new StabilityGate(100f, 0.5f, 0, 50_000);
+        int passed = 0;
+        for (int t = 0; t <= 200; t += 10) {
+            if (limited.accept(frame(t, 0, 1))) {
+                passed++;
+            }
+        }
+        // 10, 60, 110, 160
+        assertEquals(4, passed);
+    }
+}
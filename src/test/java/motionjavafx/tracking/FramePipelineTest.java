@@ -0,0 +1,76 @@
+package motionjavafx.tracking;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FramePipelineTest {
+
+    private FramePipeline<Integer> pipeline;
+
+    @After
+    public void tearDown() throws Exception {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void testEveryStageSeesEachFrame() throws Exception {
+        final List<Integer> render = new CopyOnWriteArrayList<>();
+        final List<Integer> recognition = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(6);
+        pipeline = new FramePipeline<Integer>()
+                .addStage("render", 10, FramePipeline.BackPressure.DROP_OLDEST, frame -> {
+                    render.add(frame);
+                    done.countDown();
+                })
+                .addStage("recognition", 10, FramePipeline.BackPressure.DROP_OLDEST, frame -> {
+                    recognition.add(frame);
+                    done.countDown();
+                });
+        pipeline.start();
+        for (int i = 0; i < 3; i++) {
+            pipeline.publish(i);
+        }
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(3, render.size());
+        assertEquals(render, recognition);
+    }
+
+    @Test
+    public void testCoalesceKeepsNewestFrame() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> seen = new CopyOnWriteArrayList<>();
+        pipeline = new FramePipeline<Integer>()
+                .addStage("slow", 1, FramePipeline.BackPressure.COALESCE, frame -> {
+                    seen.add(frame);
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+        pipeline.start();
+        pipeline.publish(0);
+        assertTrue(blocked.await(2, TimeUnit.SECONDS));
+        for (int i = 1; i <= 5; i++) {
+            pipeline.publish(i);
+        }
+        release.countDown();
+        final long deadline = System.currentTimeMillis() + 2000;
+        while (seen.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Integer.valueOf(5), seen.get(1));
+        assertEquals(4, pipeline.getDroppedFrames("slow"));
+    }
+}
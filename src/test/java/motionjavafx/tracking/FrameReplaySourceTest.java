@@ -0,0 +1,82 @@
+package motionjavafx.tracking;
+
+import motionjavafx.model.HandSkeleton;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class FrameReplaySourceTest {
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("frames", ".mjfx");
+        try (FrameLogWriter writer = new FrameLogWriter(file)) {
+            for (int i = 0; i < 100; i++) {
+                writer.write(createFrame(i));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    static TrackingFrame createFrame(int i) {
+        final TrackingFrame frame = new TrackingFrame();
+        frame.setId(i);
+        frame.setTimestamp(i * 1000L);
+        final HandSkeleton hand = frame.addHand();
+        hand.setId(7);
+        hand.setRightHand(i % 2 == 0);
+        hand.setConfidence(0.5f);
+        for (int p = 0; p < HandSkeleton.POINT_COUNT; p++) {
+            hand.setPoint(p, i + p, -p, p * 0.5f);
+        }
+        if (i % 3 == 0) {
+            frame.addHand().setFingerMask(3);
+        }
+        return frame;
+    }
+
+    @Test
+    public void testReadAllRestoresFrames() throws Exception {
+        final List<TrackingFrame> frames = FrameReplaySource.readAll(file);
+        assertEquals(100, frames.size());
+        for (int i = 0; i < frames.size(); i++) {
+            final TrackingFrame expected = createFrame(i);
+            final TrackingFrame actual = frames.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(expected.getHandCount(), actual.getHandCount());
+            for (int h = 0; h < expected.getHandCount(); h++) {
+                assertEquals(expected.getHand(h).isRightHand(), actual.getHand(h).isRightHand());
+                assertEquals(expected.getHand(h).getFingerMask(), actual.getHand(h).getFingerMask());
+                assertArrayEquals(expected.getHand(h).getPoints(), actual.getHand(h).getPoints(), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testReplayAsFastAsPossible() throws Exception {
+        final List<TrackingFrame> frames = new CopyOnWriteArrayList<>();
+        final FrameReplaySource source = new FrameReplaySource(file, FrameReplaySource.AS_FAST_AS_POSSIBLE, false);
+        source.start(frames::add);
+        final long deadline = System.currentTimeMillis() + 2000;
+        while (source.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        source.close();
+        assertEquals(100, frames.size());
+        assertEquals(99, frames.get(99).getId());
+    }
+}
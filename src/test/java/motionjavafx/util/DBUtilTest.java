@@ -0,0 +1,81 @@
+package motionjavafx.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DBUtilTest {
+
+    private File database;
+
+    @Before
+    public void setUp() throws Exception {
+        database = File.createTempFile("gestures", ".db");
+        DBUtil.connStr = "jdbc:sqlite:" + database.getPath();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DBUtil.shutdown();
+        Files.deleteIfExists(database.toPath());
+        Files.deleteIfExists(new File(database.getPath() + "-wal").toPath());
+        Files.deleteIfExists(new File(database.getPath() + "-shm").toPath());
+    }
+
+    @Test
+    public void testShutdownClosesConnectionsOfStoppedThreads() throws Exception {
+        final AtomicReference<Connection> connection = new AtomicReference<>();
+        final Thread worker = new Thread(() -> {
+            try {
+                connection.set(DBUtil.getConnection());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        worker.start();
+        worker.join();
+
+        DBUtil.shutdown();
+
+        assertTrue(connection.get().isClosed());
+    }
+
+    @Test
+    public void testShutdownRetiresConnectionsOfRunningThreads() throws Exception {
+        final CountDownLatch opened = new CountDownLatch(1);
+        final CountDownLatch shutDown = new CountDownLatch(1);
+        final AtomicReference<Connection> before = new AtomicReference<>();
+        final AtomicReference<Connection> after = new AtomicReference<>();
+        final AtomicReference<Boolean> closedUnderWorker = new AtomicReference<>();
+        final Thread worker = new Thread(() -> {
+            try {
+                before.set(DBUtil.getConnection());
+                opened.countDown();
+                shutDown.await();
+                closedUnderWorker.set(before.get().isClosed());
+                after.set(DBUtil.getConnection());
+                DBUtil.dbDisconnect();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        worker.start();
+        opened.await();
+
+        DBUtil.shutdown();
+        shutDown.countDown();
+        worker.join();
+
+        assertFalse(closedUnderWorker.get());
+        assertNotSame(before.get(), after.get());
+        assertTrue(before.get().isClosed());
+    }
+}